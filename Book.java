@@ -1,47 +0,0 @@
-public class Book {
-    private String bookId;
-    private String title;
-    private String author;
-    private boolean available;
-
-    public Book(String bookId, String title, String author, boolean available) {
-        this.bookId = bookId;
-        this.title = title;
-        this.author = author;
-        this.available = available;
-    }
-
-    public void displayBookDetails() {
-        System.out.printf("%s | %s | %s | Available: %s%n", bookId, title, author, available ? "Yes" : "No");
-    }
-
-    public String getBookId() {
-        return bookId;
-    }
-
-    public String getTitle() {
-        return title;
-    }
-
-    public String getAuthor() {
-        return author;
-    }
-
-    public boolean isAvailable() {
-        return available;
-    }
-
-    public void setAvailable(boolean val) {
-        available = val;
-    }
-
-    public void setTitle(String title) {
-        this.title = title;
-    }
-
-    public void setAuthor(String author) {
-        this.author = author;
-    }
-
-    
-}
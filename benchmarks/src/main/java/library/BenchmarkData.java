@@ -0,0 +1,70 @@
+package library;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+// Generated data sets are cached on disk (under -Dlibrary.benchDir, default the
+// temp directory) so forks and later runs reuse identical files. Benchmarks
+// that write work on a throwaway copy.
+final class BenchmarkData {
+    private static final String[] DATA_FILES = {"users.txt", "books.txt", "transactions.txt"};
+    private static final String COMPLETE_MARKER = ".complete";
+
+    private BenchmarkData() {
+    }
+
+    static Path dataSet(int books, int transactions) throws IOException {
+        Path root = Paths.get(System.getProperty("library.benchDir", System.getProperty("java.io.tmpdir")))
+                .resolve("library-bench");
+        Path dir = root.resolve("b" + books + "-t" + transactions + "-s" + DataGenerator.DEFAULT_SEED);
+        if (Files.exists(dir.resolve(COMPLETE_MARKER))) return dir;
+
+        Files.createDirectories(root);
+        Path staging = Files.createTempDirectory(root, "staging-");
+        DataGenerator.generate(staging, DataGenerator.defaultUsers(books), books, transactions,
+                DataGenerator.DEFAULT_SEED);
+        Files.createFile(staging.resolve(COMPLETE_MARKER));
+        try {
+            Files.move(staging, dir, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Another fork finished generating the same set first
+            delete(staging);
+        }
+        return dir;
+    }
+
+    static Path copyOf(Path dataSet) throws IOException {
+        Path copy = Files.createTempDirectory("library-bench-run-");
+        for (String name : DATA_FILES) {
+            Files.copy(dataSet.resolve(name), copy.resolve(name));
+        }
+        return copy;
+    }
+
+    // Loads a copy of the data set and opens it for changes
+    static LibrarySystem startUp(Path dataSet) throws IOException {
+        LibrarySystem system = new LibrarySystem(copyOf(dataSet));
+        if (!system.startUp()) throw new IllegalStateException("could not start the library on " + dataSet);
+        return system;
+    }
+
+    static void delete(Path dir) throws IOException {
+        if (!Files.exists(dir)) return;
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.delete(p);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+}
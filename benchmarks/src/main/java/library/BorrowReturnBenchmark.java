@@ -0,0 +1,64 @@
+package library;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// One borrow followed by the matching return, through the service and the
+// change log, so the library is in the same state after every invocation.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class BorrowReturnBenchmark {
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int books;
+
+    @Param({"1000000"})
+    public int transactions;
+
+    private LibrarySystem system;
+    private LibraryService service;
+    private User borrower;
+    private String bookId;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        system = BenchmarkData.startUp(BenchmarkData.dataSet(books, transactions));
+        service = system.getService();
+        borrower = service.findUser(DataGenerator.BORROWER_ID);
+        for (int i = 1; bookId == null; i++) {
+            if (service.findBook(DataGenerator.bookId(i)).isAvailable()) bookId = DataGenerator.bookId(i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        system.shutDown(false);
+        BenchmarkData.delete(system.getDataDir());
+    }
+
+    @Benchmark
+    public OperationResult borrowAndReturn() {
+        OperationResult borrowed = service.borrowBook(borrower, bookId);
+        if (!borrowed.isSuccess()) throw new IllegalStateException(borrowed.getMessage());
+        OperationResult returned = service.returnBook(borrower, bookId);
+        if (!returned.isSuccess()) throw new IllegalStateException(returned.getMessage());
+        return returned;
+    }
+}
@@ -0,0 +1,148 @@
+package library;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+// Writes a synthetic users.txt, books.txt and transactions.txt. The output
+// depends only on the sizes and the seed, so every run benchmarks the same data.
+//
+// Usage: DataGenerator <dir> <books> <transactions> [users] [seed]
+public class DataGenerator {
+    public static final long DEFAULT_SEED = 20251014L;
+    // The benchmarks borrow as this user; generated open loans never belong to it
+    public static final String BORROWER_ID = userId(1);
+    public static final String BORROWER_NAME = userName(1);
+    public static final String BORROWER_PASSWORD = password(1);
+
+    // Share of transactions (the newest) that are still open
+    private static final double OPEN_SHARE = 0.02;
+    private static final double MULTI_COPY_SHARE = 0.1;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2022, 1, 1);
+    private static final int DAY_RANGE = 3 * 365;
+
+    static final String[] WORDS = {
+            "river", "shadow", "garden", "winter", "empire", "silent", "crown", "glass", "forest", "memory",
+            "island", "thunder", "paper", "golden", "hollow", "ember", "signal", "harbor", "lantern", "orbit",
+            "stone", "velvet", "ashes", "meadow", "storm", "mirror", "cathedral", "desert", "falcon", "ocean",
+            "quiet", "broken", "scarlet", "atlas", "bridge", "copper", "distant", "echo", "frost", "garnet",
+            "horizon", "iron", "jasmine", "kingdom", "last", "midnight", "north", "october", "pale", "raven"};
+    static final String[] FIRST_NAMES = {
+            "Ada", "Bram", "Clara", "Dmitri", "Elena", "Farid", "Grace", "Hiro", "Ines", "Jonas",
+            "Kofi", "Lena", "Mateo", "Nadia", "Oskar", "Priya", "Quinn", "Rosa", "Soren", "Tara"};
+    static final String[] LAST_NAMES = {
+            "Abara", "Brandt", "Castillo", "Dubois", "Eriksen", "Fontaine", "Garcia", "Holm", "Ivanova", "Jensen",
+            "Kowalski", "Lindqvist", "Moreau", "Nakamura", "Okafor", "Petrov", "Quintana", "Rossi", "Sato", "Tanaka"};
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: DataGenerator <dir> <books> <transactions> [users] [seed]");
+            return;
+        }
+        int books = Integer.parseInt(args[1]);
+        int transactions = Integer.parseInt(args[2]);
+        int users = args.length > 3 ? Integer.parseInt(args[3]) : defaultUsers(books);
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : DEFAULT_SEED;
+        generate(Paths.get(args[0]), users, books, transactions, seed);
+        System.out.println("Wrote " + users + " users, " + books + " books and " + transactions
+                + " transactions to " + args[0]);
+    }
+
+    public static int defaultUsers(int books) {
+        return Math.max(100, books / 10);
+    }
+
+    public static void generate(Path dir, int users, int books, int transactions, long seed) throws IOException {
+        Files.createDirectories(dir);
+        SplittableRandom random = new SplittableRandom(seed);
+        BitSet checkedOut = writeTransactions(dir.resolve("transactions.txt"), users, books, transactions, random);
+        writeBooks(dir.resolve("books.txt"), books, checkedOut, random);
+        writeUsers(dir.resolve("users.txt"), users);
+    }
+
+    private static BitSet writeTransactions(Path path, int users, int books, int count,
+                                            SplittableRandom random) throws IOException {
+        BitSet checkedOut = new BitSet(books);
+        int firstOpen = count - (int) (count * OPEN_SHARE);
+        try (BufferedWriter w = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (int i = 1; i <= count; i++) {
+                // Dates rise with the ID, as they would in a real log
+                int day = (int) ((long) DAY_RANGE * i / Math.max(count, 1));
+                LocalDate borrowed = FIRST_DAY.plusDays(day);
+                int book = random.nextInt(books) + 1;
+                String returned;
+                if (i > firstOpen && !checkedOut.get(book)) {
+                    checkedOut.set(book);
+                    returned = "null";
+                } else {
+                    returned = borrowed.plusDays(1 + random.nextInt(30)).toString();
+                }
+                // User 1 is the benchmark borrower and is kept free of loans
+                int user = users > 1 ? 2 + random.nextInt(users - 1) : 1;
+                w.write(String.join(",", TransactionIdAllocator.format(i), userId(user), bookId(book),
+                        borrowed.toString(), returned));
+                w.newLine();
+            }
+        }
+        return checkedOut;
+    }
+
+    private static void writeBooks(Path path, int count, BitSet checkedOut, SplittableRandom random) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            StringBuilder title = new StringBuilder();
+            for (int i = 1; i <= count; i++) {
+                title.setLength(0);
+                int words = 2 + random.nextInt(3);
+                for (int j = 0; j < words; j++) {
+                    if (j > 0) title.append(' ');
+                    String word = WORDS[random.nextInt(WORDS.length)];
+                    title.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+                }
+                String author = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+                        + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+                String inventory;
+                if (random.nextDouble() < MULTI_COPY_SHARE) {
+                    int total = 2 + random.nextInt(4);
+                    inventory = (checkedOut.get(i) ? total - 1 : total) + "/" + total;
+                } else {
+                    inventory = String.valueOf(!checkedOut.get(i));
+                }
+                w.write(String.join(",", bookId(i), title, author, inventory));
+                w.newLine();
+            }
+        }
+    }
+
+    private static void writeUsers(Path path, int count) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            w.write("A0000001,Admin,admin123,admin");
+            w.newLine();
+            for (int i = 1; i <= count; i++) {
+                w.write(String.join(",", userId(i), userName(i), password(i), "user"));
+                w.newLine();
+            }
+        }
+    }
+
+    public static String userId(int n) {
+        return String.format("U%07d", n);
+    }
+
+    public static String bookId(int n) {
+        return String.format("B%08d", n);
+    }
+
+    private static String userName(int n) {
+        return "Reader " + n;
+    }
+
+    private static String password(int n) {
+        return "pw" + n;
+    }
+}
@@ -0,0 +1,48 @@
+package library;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Cold load of the three text files, as at startup
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(2)
+public class LoadBenchmark {
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int books;
+
+    @Param({"1000000"})
+    public int transactions;
+
+    private Path data;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        data = BenchmarkData.dataSet(books, transactions);
+    }
+
+    @Benchmark
+    public LibrarySystem loadAllFiles() throws IOException {
+        // Loading only reads, so the cached data set is used directly
+        LibrarySystem system = new LibrarySystem(data);
+        system.loadAllFiles();
+        return system;
+    }
+}
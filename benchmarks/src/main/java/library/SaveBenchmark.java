@@ -0,0 +1,90 @@
+package library;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// One save after a single kind of change, each iteration on a fresh copy of
+// the data set. Archiving is switched off: the generated history is years
+// old and would otherwise be compacted by the first save.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 2, jvmArgsAppend = "-Dlibrary.archiveAfterDays=1000000")
+public class SaveBenchmark {
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int books;
+
+    @Param({"1000000"})
+    public int transactions;
+
+    // none: nothing changed; borrow: appends to transactions.txt;
+    // catalogue: rewrites books.txt; return: a saved row changed, rewrites transactions.txt
+    @Param({"none", "borrow", "catalogue", "return"})
+    public String change;
+
+    private LibrarySystem system;
+
+    @Setup(Level.Iteration)
+    public void prepare() throws IOException {
+        system = BenchmarkData.startUp(BenchmarkData.dataSet(books, transactions));
+        LibraryService service = system.getService();
+        OperationResult result;
+        switch (change) {
+            case "none":
+                return;
+            case "borrow":
+                result = service.borrowBook(service.findUser(DataGenerator.BORROWER_ID), firstAvailableBook(service));
+                break;
+            case "catalogue": {
+                Book book = service.findBook(DataGenerator.bookId(1));
+                result = service.updateBook(book.getBookId(), book.getTitle() + " Revised", "", null);
+                break;
+            }
+            case "return": {
+                Transaction[] open = new Transaction[1];
+                service.forEachTransaction(t -> {
+                    if (open[0] == null && !t.isReturned()) open[0] = t;
+                });
+                result = service.returnBook(service.findUser(open[0].getUserId()), open[0].getBookId());
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("unknown change: " + change);
+        }
+        if (!result.isSuccess()) throw new IllegalStateException(result.getMessage());
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() throws IOException {
+        system.shutDown(false);
+        BenchmarkData.delete(system.getDataDir());
+    }
+
+    @Benchmark
+    public void saveAllFiles() throws IOException {
+        system.saveAllFiles();
+    }
+
+    private static String firstAvailableBook(LibraryService service) {
+        for (int i = 1; ; i++) {
+            String id = DataGenerator.bookId(i);
+            if (service.findBook(id).isAvailable()) return id;
+        }
+    }
+}
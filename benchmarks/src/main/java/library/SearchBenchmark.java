@@ -0,0 +1,55 @@
+package library;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class SearchBenchmark {
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int books;
+
+    @Param({"100000"})
+    public int transactions;
+
+    // Whole word, two words, author surname, substring, and no match
+    @Param({"river", "silent harbor", "tanaka", "arbo", "zzz"})
+    public String query;
+
+    private LibrarySystem system;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        system = BenchmarkData.startUp(BenchmarkData.dataSet(books, transactions));
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        system.shutDown(false);
+        BenchmarkData.delete(system.getDataDir());
+    }
+
+    @Benchmark
+    public List<Book> searchBooks() {
+        return system.getService().searchBooks(query);
+    }
+}
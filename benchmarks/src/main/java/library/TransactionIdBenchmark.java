@@ -0,0 +1,49 @@
+package library;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Next transaction ID, with the counter seeded as if the history held
+// `transactions` rows (it should not matter how many)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class TransactionIdBenchmark {
+    @Param({"1000", "1000000", "100000000"})
+    public long transactions;
+
+    private final TransactionIdAllocator allocator = new TransactionIdAllocator();
+
+    @Setup(Level.Iteration)
+    public void seed() {
+        allocator.reset();
+        allocator.observe(transactions);
+    }
+
+    @Benchmark
+    public String nextTransactionId() {
+        return allocator.next();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String nextTransactionIdContended() {
+        return allocator.next();
+    }
+}
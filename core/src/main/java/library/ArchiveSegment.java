@@ -0,0 +1,219 @@
+package library;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// One immutable file of archived (closed) transactions. A small uncompressed
+// header records the range of return dates and of transaction numbers, and
+// bloom filters over the users and books that appear in the segment, so
+// lookups can skip segments without decompressing them. The rows follow as
+// gzip-compressed transactions.txt lines.
+public class ArchiveSegment {
+    private static final int MAGIC = 0x4C494241; // "LIBA"
+    private static final int VERSION = 1;
+    // Rows are decoded into a columnar table this many at a time
+    private static final int BATCH_ROWS = 1024;
+
+    private final Path path;
+    private final int rowCount;
+    private final long minReturnedDay;
+    private final long maxReturnedDay;
+    // Range of the numbers of T<digits> IDs; irregularIds is set when the
+    // segment also holds IDs of any other form, which the range says nothing about
+    private final long minTransactionNumber;
+    private final long maxTransactionNumber;
+    private final boolean irregularIds;
+    private final BloomFilter userFilter;
+    private final BloomFilter bookFilter;
+
+    private ArchiveSegment(Path path, int rowCount, long minReturnedDay, long maxReturnedDay,
+                           long minTransactionNumber, long maxTransactionNumber, boolean irregularIds,
+                           BloomFilter userFilter, BloomFilter bookFilter) {
+        this.path = path;
+        this.rowCount = rowCount;
+        this.minReturnedDay = minReturnedDay;
+        this.maxReturnedDay = maxReturnedDay;
+        this.minTransactionNumber = minTransactionNumber;
+        this.maxTransactionNumber = maxTransactionNumber;
+        this.irregularIds = irregularIds;
+        this.userFilter = userFilter;
+        this.bookFilter = bookFilter;
+    }
+
+    // rows must all be closed (dateReturned set)
+    public static ArchiveSegment write(Path path, List<Transaction> rows) throws IOException {
+        BloomFilter userFilter = new BloomFilter(rows.size());
+        BloomFilter bookFilter = new BloomFilter(rows.size());
+        long minDay = Long.MAX_VALUE;
+        long maxDay = Long.MIN_VALUE;
+        long minNumber = Long.MAX_VALUE;
+        long maxNumber = 0;
+        boolean irregular = false;
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (Writer w = new OutputStreamWriter(new GZIPOutputStream(body), StandardCharsets.UTF_8)) {
+            for (Transaction t : rows) {
+                userFilter.add(t.getUserId());
+                bookFilter.add(t.getBookId());
+                long day = t.getDateReturned().toEpochDay();
+                minDay = Math.min(minDay, day);
+                maxDay = Math.max(maxDay, day);
+                long number = TransactionIdAllocator.parse(t.getTransactionId());
+                if (number < 0) {
+                    irregular = true;
+                } else {
+                    minNumber = Math.min(minNumber, number);
+                    maxNumber = Math.max(maxNumber, number);
+                }
+                w.write(t.toRecord());
+                w.write('\n');
+            }
+        }
+        if (minNumber > maxNumber) minNumber = maxNumber;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(rows.size());
+        out.writeLong(minDay);
+        out.writeLong(maxDay);
+        out.writeLong(minNumber);
+        out.writeLong(maxNumber);
+        out.writeBoolean(irregular);
+        userFilter.write(out);
+        bookFilter.write(out);
+        body.writeTo(out);
+        out.flush();
+        AtomicFiles.replace(path, bytes.toByteArray());
+        return new ArchiveSegment(path, rows.size(), minDay, maxDay, minNumber, maxNumber, irregular,
+                userFilter, bookFilter);
+    }
+
+    public static ArchiveSegment open(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) throw new IOException(path + " is not an archive segment");
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException(path + ": unsupported segment version " + version);
+            int rowCount = in.readInt();
+            long minDay = in.readLong();
+            long maxDay = in.readLong();
+            long minNumber = in.readLong();
+            long maxNumber = in.readLong();
+            boolean irregular = in.readBoolean();
+            BloomFilter userFilter = BloomFilter.read(in);
+            BloomFilter bookFilter = BloomFilter.read(in);
+            return new ArchiveSegment(path, rowCount, minDay, maxDay, minNumber, maxNumber, irregular,
+                    userFilter, bookFilter);
+        }
+    }
+
+    public void forEach(Consumer<Transaction> action) throws IOException {
+        scan(0, t -> {
+            action.accept(t);
+            return true;
+        });
+    }
+
+    // Visits rows from fromRow on until visitor returns false, and returns
+    // that row's index (it is not consumed), or -1 if the segment ran out
+    public int scan(int fromRow, Predicate<Transaction> visitor) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+            skipHeader(in);
+            InputStream body = new GZIPInputStream(in);
+            try (BufferedReader r = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+                StringDictionary users = new StringDictionary();
+                StringDictionary books = new StringDictionary();
+                TransactionTable batch = new TransactionTable(users, books, BATCH_ROWS);
+                int batchStart = fromRow;
+                int row = 0;
+                String line;
+                while ((line = r.readLine()) != null) {
+                    if (line.isEmpty()) continue;
+                    if (row++ < fromRow) continue;
+                    if (batch.size() == BATCH_ROWS) {
+                        int stopped = emit(batch, visitor);
+                        if (stopped >= 0) return batchStart + stopped;
+                        batchStart += batch.size();
+                        batch = new TransactionTable(users, books, BATCH_ROWS);
+                    }
+                    batch.addRecord(line.split(",", -1));
+                }
+                int stopped = emit(batch, visitor);
+                return stopped >= 0 ? batchStart + stopped : -1;
+            }
+        }
+    }
+
+    // Index within the batch where visitor stopped, or -1
+    private static int emit(TransactionTable batch, Predicate<Transaction> visitor) {
+        for (int i = 0; i < batch.size(); i++) {
+            if (!visitor.test(batch.get(i))) return i;
+        }
+        return -1;
+    }
+
+    public boolean mayContainUser(String userId) {
+        return userFilter.mightContain(userId);
+    }
+
+    public boolean mayContainBook(String bookId) {
+        return bookFilter.mightContain(bookId);
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public long getMinReturnedDay() {
+        return minReturnedDay;
+    }
+
+    public long getMaxReturnedDay() {
+        return maxReturnedDay;
+    }
+
+    public long getMinTransactionNumber() {
+        return minTransactionNumber;
+    }
+
+    public long getMaxTransactionNumber() {
+        return maxTransactionNumber;
+    }
+
+    public boolean hasIrregularIds() {
+        return irregularIds;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    private static void skipHeader(DataInputStream in) throws IOException {
+        in.readInt();
+        in.readInt();
+        in.readInt();
+        in.readLong();
+        in.readLong();
+        in.readLong();
+        in.readLong();
+        in.readBoolean();
+        BloomFilter.skip(in);
+        BloomFilter.skip(in);
+    }
+}
@@ -0,0 +1,93 @@
+package library;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Crash-safe file writes. replace() writes a temp file next to the target,
+// fsyncs it, renames it over the target and fsyncs the directory, so readers
+// see either the old or the new contents and the rename survives a crash.
+// append() fsyncs before returning; if it fails part way the file is cut back
+// to its old length. A crash during an append can still leave a partial last
+// line: readers skip it (the change log still has the row) and the next save
+// rewrites the file instead of appending (see endsWithNewline).
+public class AtomicFiles {
+    public interface Content {
+        void writeTo(BufferedWriter out) throws IOException;
+    }
+
+    public static void replace(Path path, Content content) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(channel, content);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(path.toAbsolutePath().getParent());
+    }
+
+    public static void replace(Path path, byte[] bytes) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(bytes);
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (data.hasRemaining()) channel.write(data);
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(path.toAbsolutePath().getParent());
+    }
+
+    public static void append(Path path, Content content) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long size = channel.size();
+            try {
+                write(channel, content);
+            } catch (IOException | RuntimeException e) {
+                channel.truncate(size);
+                throw e;
+            }
+        }
+    }
+
+    // False for a missing file or one whose last line was cut short, which
+    // must be rewritten rather than appended to.
+    public static boolean endsWithNewline(Path path) throws IOException {
+        if (!Files.exists(path)) return false;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) return true;
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, size - 1);
+            return last.get(0) == '\n';
+        }
+    }
+
+    // Makes a rename in dir durable. Some platforms (Windows) cannot open a
+    // directory; there the rename is as durable as the file system makes it.
+    static void syncDirectory(Path dir) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(dir, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    private static void write(FileChannel channel, Content content) throws IOException {
+        BufferedWriter out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1));
+        content.writeTo(out);
+        out.flush();
+        channel.force(true);
+    }
+}
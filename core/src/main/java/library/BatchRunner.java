@@ -0,0 +1,171 @@
+package library;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs a command file against a LibraryService without the console. Each
+// line is either a JSON object such as
+//   {"session": "desk1", "op": "BORROW", "args": ["B001"]}
+// or a command in the service-mode form ("BORROW,B001"); blank lines and
+// lines starting with '#' are skipped. Every session has its own login (the
+// "session" field, "main" when absent) and runs its commands in file order;
+// different sessions run in parallel on up to `threads` threads. The whole
+// file is parsed before the clock starts.
+public class BatchRunner {
+    private static final String DEFAULT_SESSION = "main";
+    // Transaction IDs a session reserves at a time
+    private static final int ID_BLOCK = 64;
+
+    private final LibraryService service;
+    private final int threads;
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final AtomicLong failures = new AtomicLong();
+
+    public BatchRunner(LibraryService service, int threads) {
+        this.service = service;
+        this.threads = Math.max(1, threads);
+    }
+
+    // Writes one JSON result line per command to results (when not null)
+    // and returns the summary report
+    public String run(Path file, Writer results) throws IOException {
+        Map<String, List<Command>> sessions = parse(file);
+        long commands = sessions.values().stream().mapToLong(List::size).sum();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, sessions.size())));
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (Map.Entry<String, List<Command>> s : sessions.entrySet()) {
+                running.add(pool.submit(() -> runSession(s.getKey(), s.getValue(), results)));
+            }
+            for (Future<?> f : running) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
+        } finally {
+            pool.shutdown();
+        }
+        long elapsed = System.nanoTime() - start;
+        return report(commands, sessions.size(), elapsed);
+    }
+
+    private void runSession(String name, List<Command> commands, Writer results) {
+        CommandSession session = new CommandSession(service, service.newIdBlock(ID_BLOCK));
+        for (Command c : commands) {
+            int[] rows = {0};
+            long start = System.nanoTime();
+            OperationResult result;
+            try {
+                result = session.execute(c.fields, row -> rows[0]++);
+            } catch (RuntimeException e) {
+                result = OperationResult.fail(e.toString());
+            }
+            long took = System.nanoTime() - start;
+            latencies.computeIfAbsent(c.fields[0].trim().toUpperCase(), k -> new LatencyHistogram()).record(took);
+            if (!result.isSuccess()) failures.incrementAndGet();
+            if (results != null) {
+                String line = "{\"line\":" + c.line + ",\"session\":" + JsonLines.quote(name)
+                        + ",\"op\":" + JsonLines.quote(c.fields[0]) + ",\"ok\":" + result.isSuccess()
+                        + ",\"message\":" + JsonLines.quote(result.getMessage()) + ",\"rows\":" + rows[0]
+                        + ",\"micros\":" + took / 1000 + "}\n";
+                synchronized (results) {
+                    try {
+                        results.write(line);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+        }
+    }
+
+    private static Map<String, List<Command>> parse(Path file) throws IOException {
+        Map<String, List<Command>> sessions = new LinkedHashMap<>();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = in.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String session = DEFAULT_SESSION;
+                String[] fields;
+                try {
+                    if (line.startsWith("{")) {
+                        Map<String, Object> json = JsonLines.parseObject(line);
+                        Object op = json.get("op");
+                        if (op == null) throw new IllegalArgumentException("no \"op\"");
+                        Object args = json.getOrDefault("args", List.of());
+                        List<?> list = args instanceof List ? (List<?>) args : List.of(args);
+                        fields = new String[list.size() + 1];
+                        fields[0] = String.valueOf(op);
+                        for (int i = 0; i < list.size(); i++) {
+                            fields[i + 1] = String.valueOf(list.get(i));
+                        }
+                        if (json.get("session") != null) session = String.valueOf(json.get("session"));
+                    } else {
+                        fields = line.split(",", -1);
+                    }
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(file.getFileName() + " line " + number + ": " + e.getMessage());
+                }
+                sessions.computeIfAbsent(session, k -> new ArrayList<>()).add(new Command(number, fields));
+            }
+        }
+        return sessions;
+    }
+
+    private String report(long commands, int sessions, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d commands in %d session(s) on %d thread(s): %.3f s, %.1f commands/s, %d failed%n",
+                commands, sessions, Math.min(threads, Math.max(1, sessions)), seconds,
+                seconds > 0 ? commands / seconds : 0, failures.get()));
+        appendLatencies(sb, latencies);
+        return sb.toString();
+    }
+
+    // Shared with LoadGenerator: one line of percentiles per operation
+    static void appendLatencies(StringBuilder sb, Map<String, LatencyHistogram> byOp) {
+        sb.append(String.format("%-22s %9s %10s %10s %10s %10s %10s %10s%n",
+                "Op", "Count", "Mean(us)", "p50(us)", "p90(us)", "p99(us)", "p99.9(us)", "Max(us)"));
+        byOp.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(e -> {
+            LatencyHistogram h = e.getValue();
+            sb.append(String.format("%-22s %9d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    e.getKey(), h.getCount(), h.getMean() / 1000, h.getPercentile(50) / 1000.0,
+                    h.getPercentile(90) / 1000.0, h.getPercentile(99) / 1000.0, h.getPercentile(99.9) / 1000.0,
+                    h.getMax() / 1000.0));
+        });
+    }
+
+    private static final class Command {
+        final int line;
+        final String[] fields;
+
+        Command(int line, String[] fields) {
+            this.line = line;
+            this.fields = fields;
+        }
+    }
+}
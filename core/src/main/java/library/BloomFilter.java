@@ -0,0 +1,77 @@
+package library;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// Set membership with false positives but no false negatives, in 10 bits per
+// key (about 1% false positives when full). Stored as its word count and
+// words. Used by SSTable for its keys and by ArchiveSegment for its users and books.
+final class BloomFilter {
+    private static final int BITS_PER_KEY = 10;
+    private static final int HASHES = 7;
+
+    private final long[] bits;
+
+    // Sized for up to maxCount keys
+    BloomFilter(int maxCount) {
+        this(new long[Math.max(1, (int) (((long) maxCount * BITS_PER_KEY + 63) / 64))]);
+    }
+
+    private BloomFilter(long[] bits) {
+        this.bits = bits;
+    }
+
+    static BloomFilter read(DataInputStream in) throws IOException {
+        long[] bits = new long[in.readInt()];
+        for (int i = 0; i < bits.length; i++) bits[i] = in.readLong();
+        return new BloomFilter(bits);
+    }
+
+    static BloomFilter read(ByteBuffer buf) {
+        long[] bits = new long[buf.getInt()];
+        for (int i = 0; i < bits.length; i++) bits[i] = buf.getLong();
+        return new BloomFilter(bits);
+    }
+
+    // Skips a filter written by write, without loading it
+    static void skip(DataInputStream in) throws IOException {
+        in.skipNBytes(8L * in.readInt());
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(bits.length);
+        for (long word : bits) out.writeLong(word);
+    }
+
+    // Double hashing over two halves of a 64-bit mix of the key's hash
+    void add(String key) {
+        long h = mix(key.hashCode());
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        long size = (long) bits.length * 64;
+        for (int i = 0; i < HASHES; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, size);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    boolean mightContain(String key) {
+        long h = mix(key.hashCode());
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        long size = (long) bits.length * 64;
+        for (int i = 0; i < HASHES; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, size);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    private static long mix(long x) {
+        x = (x ^ (x >>> 33)) * 0xff51afd7ed558ccdL;
+        x = (x ^ (x >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return x ^ (x >>> 33);
+    }
+}
@@ -0,0 +1,155 @@
+package library;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Book {
+    private String bookId;
+    private String title;
+    private String author;
+    private volatile int totalCopies;
+    // checked-out copies = totalCopies - availableCopies
+    private final AtomicInteger availableCopies;
+    // Set by every change since the book was last loaded or saved
+    private volatile boolean dirty = false;
+
+    public Book(String bookId, String title, String author, boolean available) {
+        this(bookId, title, author, 1, available ? 1 : 0);
+    }
+
+    public Book(String bookId, String title, String author, int totalCopies, int availableCopies) {
+        this.bookId = bookId;
+        this.title = title;
+        this.author = author;
+        this.totalCopies = totalCopies;
+        this.availableCopies = new AtomicInteger(availableCopies);
+    }
+
+    // Inventory field as stored in books.txt: "true"/"false" for a single copy,
+    // "available/total" (e.g. "3/5") for titles with several copies.
+    public static Book fromRecord(String bookId, String title, String author, String inventory) {
+        String field = inventory.trim();
+        int slash = field.indexOf('/');
+        if (slash < 0) return new Book(bookId, title, author, Boolean.parseBoolean(field));
+        int available = Integer.parseInt(field.substring(0, slash).trim());
+        int total = Integer.parseInt(field.substring(slash + 1).trim());
+        return new Book(bookId, title, author, total, available);
+    }
+
+    public String getInventoryField() {
+        int available = availableCopies.get();
+        if (totalCopies == 1 && available >= 0 && available <= 1) return String.valueOf(available == 1);
+        return available + "/" + totalCopies;
+    }
+
+    // One line of books.txt
+    public String toRecord() {
+        return String.join(",", bookId, title, author, getInventoryField());
+    }
+
+    public void displayBookDetails() {
+        System.out.println(toDisplayString());
+    }
+
+    public String toDisplayString() {
+        String availability;
+        if (totalCopies == 1) {
+            availability = isAvailable() ? "Yes" : "No";
+        } else {
+            availability = Math.max(0, availableCopies.get()) + " of " + totalCopies;
+        }
+        return String.format("%s | %s | %s | Available: %s", bookId, title, author, availability);
+    }
+
+    public String getBookId() {
+        return bookId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public boolean isAvailable() {
+        return availableCopies.get() > 0;
+    }
+
+    public int getTotalCopies() {
+        return totalCopies;
+    }
+
+    public int getAvailableCopies() {
+        return availableCopies.get();
+    }
+
+    public int getCheckedOutCopies() {
+        return totalCopies - availableCopies.get();
+    }
+
+    // Takes one copy if any is left. Lock-free: retries the compare-and-set
+    // only when another thread changed the count in between.
+    public boolean tryCheckout() {
+        while (true) {
+            int available = availableCopies.get();
+            if (available <= 0) return false;
+            if (availableCopies.compareAndSet(available, available - 1)) {
+                dirty = true;
+                return true;
+            }
+        }
+    }
+
+    // Puts one copy back; returns false if no copy was checked out.
+    public boolean checkin() {
+        while (true) {
+            int available = availableCopies.get();
+            if (available >= totalCopies) return false;
+            if (availableCopies.compareAndSet(available, available + 1)) {
+                dirty = true;
+                return true;
+            }
+        }
+    }
+
+    // Marks every copy available (true) or none (false)
+    public void setAvailable(boolean val) {
+        availableCopies.set(val ? totalCopies : 0);
+        dirty = true;
+    }
+
+    public synchronized void setCheckedOutCopies(int copies) {
+        if (availableCopies.getAndSet(totalCopies - copies) != totalCopies - copies) dirty = true;
+    }
+
+    // Copies already checked out stay checked out; if there are more of them
+    // than the new total, the available count stays negative until they return.
+    public synchronized void setTotalCopies(int copies) {
+        if (copies < 1) throw new IllegalArgumentException("A book needs at least one copy");
+        int delta = copies - totalCopies;
+        totalCopies = copies;
+        availableCopies.addAndGet(delta);
+        dirty = true;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+        dirty = true;
+    }
+
+    public void setAuthor(String author) {
+        this.author = author;
+        dirty = true;
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    public void markClean() {
+        dirty = false;
+    }
+
+
+}
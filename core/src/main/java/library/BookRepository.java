@@ -0,0 +1,139 @@
+package library;
+
+import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+public class BookRepository {
+    // Keyed by book ID. Insertion order is kept so listings follow books.txt.
+    private final Map<String, Book> booksById = new LinkedHashMap<>();
+    // Same books sorted by ID, for listings that resume after a given ID
+    private final NavigableMap<String, Book> inIdOrder = new TreeMap<>();
+    // Set when books are added or removed, with their IDs for the sharded
+    // layout; field changes are tracked per book
+    private boolean membershipChanged = false;
+    private final Set<String> membershipChanges = new HashSet<>();
+    private final BookSearchIndex searchIndex = new BookSearchIndex();
+    private final CompletionIndex completions = new CompletionIndex();
+    private final SearchCache searchCache = new SearchCache(Integer.getInteger("library.searchCacheWeight", 100_000));
+
+    public Book findById(String bookId) {
+        return booksById.get(bookId);
+    }
+
+    public boolean contains(String bookId) {
+        return booksById.containsKey(bookId);
+    }
+
+    public boolean add(Book book) {
+        if (booksById.containsKey(book.getBookId())) return false;
+        booksById.put(book.getBookId(), book);
+        inIdOrder.put(book.getBookId(), book);
+        searchIndex.add(book);
+        completions.add(book);
+        searchCache.bookAdded(book);
+        membershipChanged = true;
+        membershipChanges.add(book.getBookId());
+        return true;
+    }
+
+    // Call after changing a book's title or author so the search index follows
+    public void update(Book book) {
+        if (booksById.put(book.getBookId(), book) != book) {
+            membershipChanged = true;
+            membershipChanges.add(book.getBookId());
+        }
+        inIdOrder.put(book.getBookId(), book);
+        searchIndex.add(book);
+        completions.add(book);
+        searchCache.bookChanged(book);
+    }
+
+    public Book remove(String bookId) {
+        searchIndex.remove(bookId);
+        completions.remove(bookId);
+        searchCache.bookRemoved(bookId);
+        Book removed = booksById.remove(bookId);
+        inIdOrder.remove(bookId);
+        if (removed != null) {
+            membershipChanged = true;
+            membershipChanges.add(bookId);
+        }
+        return removed;
+    }
+
+    // Safe to call concurrently with other searches, not with changes
+    public List<Book> search(String keyword) {
+        String query = BookSearchIndex.normalize(keyword);
+        List<String> ids = searchCache.get(query);
+        if (ids == null) {
+            ids = searchIndex.search(query);
+            searchCache.put(query, ids);
+        }
+        List<Book> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            result.add(booksById.get(id));
+        }
+        return result;
+    }
+
+    // Books with an ID after afterId (from the first when null), in ID order,
+    // until visitor returns false
+    public void scan(String afterId, Predicate<Book> visitor) {
+        Map<String, Book> rest = afterId == null ? inIdOrder : inIdOrder.tailMap(afterId, false);
+        for (Book b : rest.values()) {
+            if (!visitor.test(b)) return;
+        }
+    }
+
+    public Collection<Book> findAll() {
+        return Collections.unmodifiableCollection(booksById.values());
+    }
+
+    // Title and author completion; loans recorded there rank the suggestions
+    public CompletionIndex getCompletions() {
+        return completions;
+    }
+
+    public SearchCache getSearchCache() {
+        return searchCache;
+    }
+
+    public int size() {
+        return booksById.size();
+    }
+
+    public void clear() {
+        booksById.clear();
+        inIdOrder.clear();
+        searchIndex.clear();
+        completions.clear();
+        searchCache.clear();
+        membershipChanged = true;
+        membershipChanges.clear();
+    }
+
+    public boolean hasChanges() {
+        return membershipChanged || booksById.values().stream().anyMatch(Book::isDirty);
+    }
+
+    // IDs of books added, replaced or removed since markClean (clear() is
+    // always followed by a reload and markClean, so it forgets them)
+    public Set<String> findMembershipChanges() {
+        return new HashSet<>(membershipChanges);
+    }
+
+    public void markClean() {
+        membershipChanged = false;
+        membershipChanges.clear();
+        booksById.values().forEach(Book::markClean);
+    }
+}
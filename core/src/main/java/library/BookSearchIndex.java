@@ -0,0 +1,131 @@
+package library;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// Inverted index over title and author. Every whitespace-separated token is
+// indexed whole and as n-grams of up to MAX_GRAM characters, so substring
+// queries only have to verify the books that share all of the query's grams.
+public class BookSearchIndex {
+    private static final int MAX_GRAM = 3;
+
+    private final Map<String, Set<String>> tokenPostings = new HashMap<>();
+    private final Map<String, Set<String>> gramPostings = new HashMap<>();
+    // bookId -> {normalized title, normalized author}, also used to unindex
+    private final Map<String, String[]> indexedText = new HashMap<>();
+
+    public void add(Book book) {
+        remove(book.getBookId());
+        String[] text = {normalize(book.getTitle()), normalize(book.getAuthor())};
+        indexedText.put(book.getBookId(), text);
+        for (String field : text) {
+            for (String token : tokenize(field)) {
+                post(tokenPostings, token, book.getBookId());
+                for (String gram : grams(token)) {
+                    post(gramPostings, gram, book.getBookId());
+                }
+            }
+        }
+    }
+
+    public void remove(String bookId) {
+        String[] text = indexedText.remove(bookId);
+        if (text == null) return;
+        for (String field : text) {
+            for (String token : tokenize(field)) {
+                unpost(tokenPostings, token, bookId);
+                for (String gram : grams(token)) {
+                    unpost(gramPostings, gram, bookId);
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        tokenPostings.clear();
+        gramPostings.clear();
+        indexedText.clear();
+    }
+
+    // Same matches as a case-insensitive contains() on title or author.
+    public List<String> search(String query) {
+        String q = normalize(query);
+        List<String> result = new ArrayList<>();
+        if (q.isEmpty()) {
+            result.addAll(indexedText.keySet());
+            result.sort(Comparator.naturalOrder());
+            return result;
+        }
+        String[] pieces = tokenize(q);
+        List<Set<String>> postings = new ArrayList<>();
+        for (int i = 0; i < pieces.length; i++) {
+            if (i > 0 && i < pieces.length - 1) {
+                // Inner pieces of a multi-word query are always whole tokens
+                postings.add(tokenPostings.getOrDefault(pieces[i], Collections.emptySet()));
+            } else {
+                addGramPostings(pieces[i], postings);
+            }
+        }
+        for (String id : intersect(postings)) {
+            String[] text = indexedText.get(id);
+            if (text[0].contains(q) || text[1].contains(q)) result.add(id);
+        }
+        result.sort(Comparator.naturalOrder());
+        return result;
+    }
+
+    private void addGramPostings(String piece, List<Set<String>> postings) {
+        if (piece.length() <= MAX_GRAM) {
+            postings.add(gramPostings.getOrDefault(piece, Collections.emptySet()));
+            return;
+        }
+        for (int i = 0; i + MAX_GRAM <= piece.length(); i++) {
+            postings.add(gramPostings.getOrDefault(piece.substring(i, i + MAX_GRAM), Collections.emptySet()));
+        }
+    }
+
+    private static Set<String> intersect(List<Set<String>> postings) {
+        postings.sort(Comparator.comparingInt(Set::size));
+        Set<String> result = new HashSet<>(postings.get(0));
+        for (int i = 1; i < postings.size() && !result.isEmpty(); i++) {
+            result.retainAll(postings.get(i));
+        }
+        return result;
+    }
+
+    private static void post(Map<String, Set<String>> index, String key, String bookId) {
+        index.computeIfAbsent(key, k -> new HashSet<>()).add(bookId);
+    }
+
+    private static void unpost(Map<String, Set<String>> index, String key, String bookId) {
+        Set<String> ids = index.get(key);
+        if (ids == null) return;
+        ids.remove(bookId);
+        if (ids.isEmpty()) index.remove(key);
+    }
+
+    private static Set<String> grams(String token) {
+        Set<String> grams = new HashSet<>();
+        for (int n = 1; n <= MAX_GRAM; n++) {
+            for (int i = 0; i + n <= token.length(); i++) {
+                grams.add(token.substring(i, i + n));
+            }
+        }
+        return grams;
+    }
+
+    private static String[] tokenize(String text) {
+        return text.isEmpty() ? new String[0] : text.split("\\s+");
+    }
+
+    static String normalize(String text) {
+        return text.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,256 @@
+package library;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.ObjLongConsumer;
+
+// Circulation aggregates over the whole history (archive included): loans
+// per book and per user, kept ranked; borrows and returns per day; and the
+// average loan length. rebuild() tallies the history in parallel once at
+// start-up, after which the service reports every borrow and return, so
+// reading a report never touches the transactions.
+public class CirculationStats {
+    // Hot rows per fork-join leaf
+    private static final int ROWS_PER_TASK = 1 << 16;
+
+    private final Ranking books = new Ranking();
+    private final Ranking users = new Ranking();
+    // Epoch day -> {borrows, returns}
+    private final NavigableMap<Integer, long[]> byDay = new TreeMap<>();
+    private long loans = 0;
+    private long returnedLoans = 0;
+    private long loanDays = 0;
+
+    public void rebuild(TransactionTable rows, TransactionArchive archive) throws IOException {
+        Tally total;
+        try {
+            total = ForkJoinPool.commonPool().invoke(new HistoryTask(rows, rows.size(), archive));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        synchronized (this) {
+            books.reset(total.byBook);
+            users.reset(total.byUser);
+            byDay.clear();
+            byDay.putAll(total.byDay);
+            loans = total.loans;
+            returnedLoans = total.returnedLoans;
+            loanDays = total.loanDays;
+        }
+    }
+
+    public synchronized void recordBorrow(Transaction t) {
+        books.increment(t.getBookId());
+        users.increment(t.getUserId());
+        day(t.table().borrowedDay(t.row()))[0]++;
+        loans++;
+    }
+
+    public synchronized void recordReturn(Transaction t) {
+        int borrowed = t.table().borrowedDay(t.row());
+        int returned = t.table().returnedDay(t.row());
+        if (returned == TransactionTable.NO_DATE) return;
+        day(returned)[1]++;
+        returnedLoans++;
+        loanDays += returned - borrowed;
+    }
+
+    // The k most borrowed books, as {bookId, loans}, most first
+    public synchronized List<Map.Entry<String, Long>> topBooks(int k) {
+        return books.top(k);
+    }
+
+    public synchronized List<Map.Entry<String, Long>> topUsers(int k) {
+        return users.top(k);
+    }
+
+    public synchronized void forEachBook(ObjLongConsumer<String> action) {
+        books.counts.forEach(action::accept);
+    }
+
+    public synchronized long getLoans() {
+        return loans;
+    }
+
+    public synchronized long getReturnedLoans() {
+        return returnedLoans;
+    }
+
+    // Over returned loans only; 0 when there are none
+    public synchronized double averageLoanDays() {
+        return returnedLoans == 0 ? 0 : (double) loanDays / returnedLoans;
+    }
+
+    // Epoch day -> {borrows, returns} for days with any activity in [fromDay, toDay]
+    public synchronized NavigableMap<Integer, long[]> circulation(int fromDay, int toDay) {
+        NavigableMap<Integer, long[]> result = new TreeMap<>();
+        if (fromDay > toDay) return result;
+        byDay.subMap(fromDay, true, toDay, true).forEach((day, counts) -> result.put(day, counts.clone()));
+        return result;
+    }
+
+    private long[] day(int day) {
+        return byDay.computeIfAbsent(day, d -> new long[2]);
+    }
+
+    // Counts per ID, plus the IDs ordered by count (descending, then by ID), so
+    // an increment is O(log n) and the top k are the first k entries
+    private static final class Ranking {
+        private final Map<String, Long> counts = new HashMap<>();
+        private final TreeSet<Map.Entry<String, Long>> order = new TreeSet<>(
+                Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+
+        void increment(String id) {
+            Long old = counts.get(id);
+            if (old != null) order.remove(Map.entry(id, old));
+            long count = old != null ? old + 1 : 1;
+            counts.put(id, count);
+            order.add(Map.entry(id, count));
+        }
+
+        void reset(Map<String, long[]> tallied) {
+            counts.clear();
+            order.clear();
+            tallied.forEach((id, count) -> {
+                counts.put(id, count[0]);
+                order.add(Map.entry(id, count[0]));
+            });
+        }
+
+        List<Map.Entry<String, Long>> top(int k) {
+            List<Map.Entry<String, Long>> result = new ArrayList<>(Math.min(k, order.size()));
+            for (Map.Entry<String, Long> e : order) {
+                if (result.size() == k) break;
+                result.add(e);
+            }
+            return result;
+        }
+    }
+
+    // Partial aggregates of one slice of the history; slices merge pairwise
+    private static final class Tally {
+        final Map<String, long[]> byBook = new HashMap<>();
+        final Map<String, long[]> byUser = new HashMap<>();
+        final Map<Integer, long[]> byDay = new HashMap<>();
+        long loans;
+        long returnedLoans;
+        long loanDays;
+
+        void add(TransactionTable rows, int row) {
+            byBook.computeIfAbsent(rows.bookId(row), id -> new long[1])[0]++;
+            byUser.computeIfAbsent(rows.userId(row), id -> new long[1])[0]++;
+            int borrowed = rows.borrowedDay(row);
+            byDay.computeIfAbsent(borrowed, d -> new long[2])[0]++;
+            loans++;
+            int returned = rows.returnedDay(row);
+            if (returned != TransactionTable.NO_DATE) {
+                byDay.computeIfAbsent(returned, d -> new long[2])[1]++;
+                returnedLoans++;
+                loanDays += returned - borrowed;
+            }
+        }
+
+        Tally merge(Tally other) {
+            other.byBook.forEach((id, n) -> byBook.merge(id, n, (a, b) -> { a[0] += b[0]; return a; }));
+            other.byUser.forEach((id, n) -> byUser.merge(id, n, (a, b) -> { a[0] += b[0]; return a; }));
+            other.byDay.forEach((day, n) -> byDay.merge(day, n, (a, b) -> { a[0] += b[0]; a[1] += b[1]; return a; }));
+            loans += other.loans;
+            returnedLoans += other.returnedLoans;
+            loanDays += other.loanDays;
+            return this;
+        }
+    }
+
+    // One task per archive segment (each decompresses on its own thread)
+    // plus the in-memory rows split in halves down to ROWS_PER_TASK
+    private static final class HistoryTask extends RecursiveTask<Tally> {
+        private static final long serialVersionUID = 1L;
+
+        private final TransactionTable rows;
+        private final int count;
+        private final TransactionArchive archive;
+
+        HistoryTask(TransactionTable rows, int count, TransactionArchive archive) {
+            this.rows = rows;
+            this.count = count;
+            this.archive = archive;
+        }
+
+        @Override
+        protected Tally compute() {
+            List<RecursiveTask<Tally>> tasks = new ArrayList<>();
+            tasks.add(new RowsTask(rows, 0, count));
+            if (archive != null) {
+                for (ArchiveSegment s : archive.getSegments()) {
+                    tasks.add(new SegmentTask(s));
+                }
+            }
+            invokeAll(tasks);
+            Tally total = new Tally();
+            for (RecursiveTask<Tally> t : tasks) {
+                total.merge(t.join());
+            }
+            return total;
+        }
+    }
+
+    private static final class RowsTask extends RecursiveTask<Tally> {
+        private static final long serialVersionUID = 1L;
+
+        private final TransactionTable rows;
+        private final int from;
+        private final int to;
+
+        RowsTask(TransactionTable rows, int from, int to) {
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (to - from <= ROWS_PER_TASK) {
+                Tally tally = new Tally();
+                for (int i = from; i < to; i++) {
+                    tally.add(rows, i);
+                }
+                return tally;
+            }
+            int mid = (from + to) >>> 1;
+            RowsTask left = new RowsTask(rows, from, mid);
+            left.fork();
+            Tally right = new RowsTask(rows, mid, to).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    private static final class SegmentTask extends RecursiveTask<Tally> {
+        private static final long serialVersionUID = 1L;
+
+        private final ArchiveSegment segment;
+
+        SegmentTask(ArchiveSegment segment) {
+            this.segment = segment;
+        }
+
+        @Override
+        protected Tally compute() {
+            Tally tally = new Tally();
+            try {
+                segment.forEach(t -> tally.add(t.table(), t.row()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return tally;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package library;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+// One connected client. Each session keeps its own login state in a
+// CommandSession; every operation goes through the shared LibraryService.
+//
+// Requests are single lines of comma-separated fields, e.g. "LOGIN,John Doe,pass123"
+// or "BORROW,B001". Each reply is zero or more data lines followed by a line
+// starting with "OK " or "ERR ".
+public class ClientSession implements Runnable {
+    private final CommandSession session;
+    private final Socket socket;
+
+    public ClientSession(LibraryService service, Socket socket) {
+        this.session = new CommandSession(service);
+        this.socket = socket;
+    }
+
+    @Override
+    public void run() {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(s.getOutputStream(), false, StandardCharsets.UTF_8)) {
+            out.println("OK Library service ready. Send HELP for commands.");
+            out.flush();
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                boolean keepOpen = handle(line.split(",", -1), out);
+                out.flush();
+                if (!keepOpen) break;
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Session ended with error: " + e.getMessage());
+        }
+    }
+
+    private boolean handle(String[] cmd, PrintWriter out) {
+        if (cmd[0].trim().equalsIgnoreCase("QUIT")) {
+            out.println("OK Goodbye!");
+            return false;
+        }
+        OperationResult result = session.execute(cmd, out::println);
+        String message = result.getMessage();
+        out.println((result.isSuccess() ? "OK" : "ERR") + (message.isEmpty() ? "" : " " + message));
+        return true;
+    }
+}
@@ -0,0 +1,152 @@
+package library;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// The command API behind service mode and batch mode: one login state plus
+// the operations a console user could perform, without any prompting.
+// A command is its name followed by its arguments, e.g. {"LOGIN", "John Doe",
+// "pass123"} or {"BORROW", "B001"}; rows of a listing go to the given
+// consumer and the result message summarizes the outcome.
+public class CommandSession {
+    public static final String HELP =
+            "LOGIN,<name>,<password>  LOGOUT  QUIT  BOOKS[,<afterId>]  SEARCH,<keyword>  COMPLETE,<prefix>  BORROW,<bookId>"
+            + "  RETURN,<bookId>  HOLD,<bookId>  CANCEL_HOLD,<bookId>  HOLDS\n"
+            + "admin: USERS  ADD_USER,<id>,<name>,<password>,<role>  UPDATE_USER,<id>,<name>,<password>,<role>"
+            + "  DELETE_USER,<id>  ADD_BOOK,<id>,<title>,<author>[,<copies>]  UPDATE_BOOK,<id>,<title>,<author>,<copies>"
+            + "  DELETE_BOOK,<id>  TRANSACTIONS  TRANSACTIONS_BY_USER,<userId>  TRANSACTIONS_BY_BOOK,<bookId>";
+
+    private static final int COMPLETIONS = 10;
+    private static final int BOOKS_PAGE = 50;
+
+    private final LibraryService service;
+    // The session's own block of transaction IDs, or null to take them one at a time
+    private final TransactionIdAllocator.Block ids;
+    private User loggedInUser = null;
+
+    public CommandSession(LibraryService service) {
+        this(service, null);
+    }
+
+    public CommandSession(LibraryService service, TransactionIdAllocator.Block ids) {
+        this.service = service;
+        this.ids = ids;
+    }
+
+    public OperationResult execute(String[] cmd, Consumer<String> rows) {
+        try {
+            return dispatch(cmd[0].trim().toUpperCase(), cmd, rows);
+        } catch (NumberFormatException e) {
+            return OperationResult.fail("Not a number: " + e.getMessage());
+        }
+    }
+
+    public User getLoggedInUser() {
+        return loggedInUser;
+    }
+
+    private OperationResult dispatch(String op, String[] cmd, Consumer<String> rows) {
+        if (op.equals("HELP")) {
+            for (String line : HELP.split("\n")) {
+                rows.accept(line);
+            }
+            return OperationResult.ok("");
+        }
+        if (op.equals("LOGIN")) {
+            if (cmd.length < 3) return OperationResult.fail("Usage: LOGIN,<name>,<password>");
+            User u = service.login(cmd[1].trim(), cmd[2].trim());
+            if (u == null) return OperationResult.fail("Invalid username or password.");
+            loggedInUser = u;
+            return OperationResult.ok("Login successful! Welcome, " + u.getName() + ".");
+        }
+        if (loggedInUser == null) return OperationResult.fail("Please log in first.");
+
+        switch (op) {
+            case "LOGOUT":
+                loggedInUser = null;
+                return OperationResult.ok("Logged out.");
+            case "BOOKS": {
+                int[] count = {0};
+                String next = service.listBooks(arg(cmd, 1), 0, BOOKS_PAGE, b -> {
+                    rows.accept(b.toDisplayString());
+                    count[0]++;
+                });
+                return OperationResult.ok(count[0] + " row(s)" + (next != null ? "; more with BOOKS," + next : ""));
+            }
+            case "SEARCH":
+                return list(rows, service.searchBooks(arg(cmd, 1)), Book::toDisplayString);
+            case "COMPLETE":
+                return list(rows, service.completeBooks(arg(cmd, 1), COMPLETIONS),
+                        s -> s.getText() + " | " + s.getLoans() + " loans | " + s.getBookCount() + " book(s) | "
+                                + String.join(" ", s.getBookIds()));
+            case "BORROW":
+                return service.borrowBook(loggedInUser, arg(cmd, 1), ids);
+            case "RETURN":
+                return service.returnBook(loggedInUser, arg(cmd, 1));
+            case "HOLD":
+                return service.placeHold(loggedInUser, arg(cmd, 1));
+            case "CANCEL_HOLD":
+                return service.cancelHold(loggedInUser, arg(cmd, 1));
+            case "HOLDS":
+                return list(rows, service.findHolds(loggedInUser.getId()), Hold::toDisplayString);
+            default:
+                break;
+        }
+
+        if (!loggedInUser.getRole().equalsIgnoreCase("admin")) {
+            return OperationResult.fail("Unknown or admin-only command: " + op);
+        }
+        switch (op) {
+            case "USERS":
+                return list(rows, service.listUsers(), User::toDisplayString);
+            case "ADD_USER":
+                return service.addUser(arg(cmd, 1), arg(cmd, 2), arg(cmd, 3), arg(cmd, 4));
+            case "UPDATE_USER":
+                return service.updateUser(arg(cmd, 1), arg(cmd, 2), arg(cmd, 3), arg(cmd, 4));
+            case "DELETE_USER":
+                return service.deleteUser(arg(cmd, 1));
+            case "ADD_BOOK": {
+                String copies = arg(cmd, 4);
+                return service.addBook(arg(cmd, 1), arg(cmd, 2), arg(cmd, 3),
+                        copies.isEmpty() ? 1 : Integer.parseInt(copies));
+            }
+            case "UPDATE_BOOK": {
+                String copies = arg(cmd, 4);
+                return service.updateBook(arg(cmd, 1), arg(cmd, 2), arg(cmd, 3),
+                        copies.isEmpty() ? null : Integer.parseInt(copies));
+            }
+            case "DELETE_BOOK":
+                return service.deleteBook(arg(cmd, 1));
+            case "TRANSACTIONS":
+                return history(rows, service::forEachTransaction);
+            case "TRANSACTIONS_BY_USER":
+                return history(rows, r -> service.forEachTransactionByUser(arg(cmd, 1), r));
+            case "TRANSACTIONS_BY_BOOK":
+                return history(rows, r -> service.forEachTransactionByBook(arg(cmd, 1), r));
+            default:
+                return OperationResult.fail("Unknown command: " + op);
+        }
+    }
+
+    private static String arg(String[] cmd, int i) {
+        return i < cmd.length ? cmd[i].trim() : "";
+    }
+
+    private static <T> OperationResult list(Consumer<String> out, List<T> rows, Function<T, String> format) {
+        for (T row : rows) {
+            out.accept(format.apply(row));
+        }
+        return OperationResult.ok(rows.size() + " row(s)");
+    }
+
+    // Like list, but rows are passed on as the service streams them
+    private static OperationResult history(Consumer<String> out, Consumer<Consumer<Transaction>> scan) {
+        int[] count = {0};
+        scan.accept(t -> {
+            out.accept(t.toDisplayString());
+            count[0]++;
+        });
+        return OperationResult.ok(count[0] + " row(s)");
+    }
+}
@@ -0,0 +1,479 @@
+package library;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+// Prefix completion over normalized titles and author names, and over the
+// words in them (so "fitzg" finds the author by surname), ranked by
+// circulation. The terms live in a radix tree kept in parallel arrays: an
+// edge label is a slice of one shared char pool, so splitting an edge on
+// insert copies nothing. Every node also stores an upper bound on the score
+// of any term below it, and top-k is a best-first walk that expands the most
+// promising subtree first, touching roughly k paths whatever the catalogue
+// size. Scores only grow while loans are recorded; when a book leaves a term
+// the bounds above it are left as they were, which keeps them valid upper
+// bounds. A term no book uses any more is dropped, with the nodes that led
+// only to it; their slots are reused, and the char pool is compacted once
+// half of it is dead labels. Typo-tolerant lookups run a Levenshtein
+// automaton (one DP row per character) down the same tree. All methods hold
+// the monitor.
+public class CompletionIndex {
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+
+    private char[] pool = new char[1 << 12];
+    private int poolSize = 0;
+    private int[] labelStart = new int[1 << 10];
+    private int[] labelLength = new int[1 << 10];
+    private int[] firstChild = new int[1 << 10];
+    private int[] nextSibling = new int[1 << 10];
+    private int[] termOf = new int[1 << 10];
+    private long[] best = new long[1 << 10];
+    private int nodeCount = 0;
+    private int deadChars = 0;
+    // Node and term slots free for reuse
+    private int[] freeNodes = new int[16];
+    private int freeNodeCount = 0;
+    private final List<Integer> freeTerms = new ArrayList<>();
+
+    private final List<Term> terms = new ArrayList<>();
+    private final Map<String, Long> loansByBook = new HashMap<>();
+    // bookId -> its distinct normalized keys, used to unindex
+    private final Map<String, String[]> indexedText = new HashMap<>();
+    // Words shorter than this, and the common words below, are not indexed on
+    // their own (a whole title or name still is)
+    private static final int MIN_WORD = 3;
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "the", "and", "for", "with", "from", "into", "onto", "over", "under", "about",
+            "its", "his", "her", "our", "your", "their", "this", "that", "these", "those",
+            "are", "was", "were", "not", "but", "nor", "yet", "all", "any", "who", "what",
+            "les", "des", "une", "der", "die", "das", "del", "los", "las"));
+    // Book IDs a suggestion carries; getBookCount has the full number
+    private static final int SAMPLE_IDS = 5;
+
+    public CompletionIndex() {
+        newNode(0, 0);
+    }
+
+    public static final class Suggestion {
+        private final String text;
+        private final long loans;
+        private final int edits;
+        private final List<String> bookIds;
+        private final int bookCount;
+
+        Suggestion(String text, long loans, int edits, List<String> bookIds, int bookCount) {
+            this.text = text;
+            this.loans = loans;
+            this.edits = edits;
+            this.bookIds = bookIds;
+            this.bookCount = bookCount;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public long getLoans() {
+            return loans;
+        }
+
+        // Edits between the query and the matched prefix; 0 for exact prefixes
+        public int getEdits() {
+            return edits;
+        }
+
+        // The first few books with this term, in the order they were indexed
+        public List<String> getBookIds() {
+            return bookIds;
+        }
+
+        public int getBookCount() {
+            return bookCount;
+        }
+    }
+
+    private static final class Term {
+        final String text;
+        final Set<String> bookIds = new LinkedHashSet<>(2);
+        long loans;
+
+        Term(String text) {
+            this.text = text;
+        }
+    }
+
+    public synchronized void add(Book book) {
+        remove(book.getBookId());
+        Map<String, String> keys = new LinkedHashMap<>();
+        for (String field : new String[]{book.getTitle().trim(), book.getAuthor().trim()}) {
+            if (field.isEmpty()) continue;
+            keys.putIfAbsent(BookSearchIndex.normalize(field), field);
+            for (String word : field.split("\\s+")) {
+                String key = BookSearchIndex.normalize(word);
+                if (key.length() >= MIN_WORD && !STOP_WORDS.contains(key)) keys.putIfAbsent(key, word);
+            }
+        }
+        indexedText.put(book.getBookId(), keys.keySet().toArray(new String[0]));
+        long loans = loansByBook.getOrDefault(book.getBookId(), 0L);
+        keys.forEach((key, display) -> {
+            Term term = terms.get(insert(key, display));
+            term.bookIds.add(book.getBookId());
+            term.loans += loans;
+            raise(key, term.loans);
+        });
+    }
+
+    public synchronized void remove(String bookId) {
+        String[] keys = indexedText.remove(bookId);
+        if (keys == null) return;
+        long loans = loansByBook.getOrDefault(bookId, 0L);
+        for (int i = 0; i < keys.length; i++) {
+            int node = find(keys[i]);
+            if (node == NONE || termOf[node] == NONE) continue;
+            Term term = terms.get(termOf[node]);
+            term.bookIds.remove(bookId);
+            term.loans -= loans;
+            if (term.bookIds.isEmpty()) {
+                freeTerms.add(termOf[node]);
+                terms.set(termOf[node], null);
+                termOf[node] = NONE;
+                prune(keys[i]);
+            }
+        }
+        if (deadChars > poolSize / 2) compactPool();
+    }
+
+    public synchronized void recordLoan(String bookId) {
+        addLoans(bookId, 1);
+    }
+
+    // Seeds a book's count (e.g. from CirculationStats after loading)
+    public synchronized void setLoans(String bookId, long loans) {
+        addLoans(bookId, loans - loansByBook.getOrDefault(bookId, 0L));
+    }
+
+    public synchronized void clear() {
+        poolSize = 0;
+        deadChars = 0;
+        nodeCount = 0;
+        freeNodeCount = 0;
+        terms.clear();
+        freeTerms.clear();
+        indexedText.clear();
+        newNode(0, 0);
+    }
+
+    // Up to k terms starting with prefix, most borrowed first
+    public synchronized List<Suggestion> complete(String prefix, int k) {
+        String q = BookSearchIndex.normalize(prefix);
+        PriorityQueue<Candidate> queue = new PriorityQueue<>();
+        int node = locate(q);
+        if (node != NONE) queue.add(new Candidate(node, 0, best[node], false));
+        return drain(queue, k);
+    }
+
+    // Up to k terms with a prefix within maxEdits edits of the query, fewest
+    // edits first, then most borrowed
+    public synchronized List<Suggestion> completeFuzzy(String query, int k, int maxEdits) {
+        String q = BookSearchIndex.normalize(query);
+        PriorityQueue<Candidate> queue = new PriorityQueue<>();
+        int[] row = new int[q.length() + 1];
+        for (int i = 0; i <= q.length(); i++) row[i] = i;
+        if (row[q.length()] <= maxEdits) {
+            queue.add(new Candidate(ROOT, row[q.length()], best[ROOT], false));
+        }
+        for (int child = firstChild[ROOT]; child != NONE; child = nextSibling[child]) {
+            seed(child, q, row, maxEdits, row[q.length()], queue);
+        }
+        return drain(queue, k);
+    }
+
+    public synchronized int termCount() {
+        return terms.size() - freeTerms.size();
+    }
+
+    // Walks the edge into node one character at a time, extending the
+    // Levenshtein row; wherever the whole query has been matched within
+    // maxEdits and more cheaply than by an ancestor, the subtree is queued
+    private void seed(int node, String q, int[] parentRow, int maxEdits, int seededEdits, PriorityQueue<Candidate> queue) {
+        int m = q.length();
+        int[] row = parentRow;
+        for (int j = 0; j < labelLength[node]; j++) {
+            char c = pool[labelStart[node] + j];
+            int[] next = new int[m + 1];
+            next[0] = row[0] + 1;
+            int min = next[0];
+            for (int i = 1; i <= m; i++) {
+                int cost = q.charAt(i - 1) == c ? 0 : 1;
+                next[i] = Math.min(Math.min(next[i - 1] + 1, row[i] + 1), row[i - 1] + cost);
+                min = Math.min(min, next[i]);
+            }
+            if (min > maxEdits) return;
+            row = next;
+            if (row[m] <= maxEdits && row[m] < seededEdits) {
+                seededEdits = row[m];
+                queue.add(new Candidate(node, seededEdits, best[node], false));
+            }
+        }
+        for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+            seed(child, q, row, maxEdits, seededEdits, queue);
+        }
+    }
+
+    private List<Suggestion> drain(PriorityQueue<Candidate> queue, int k) {
+        List<Suggestion> result = new ArrayList<>();
+        Set<Integer> seen = new HashSet<>();
+        while (!queue.isEmpty() && result.size() < k) {
+            Candidate c = queue.poll();
+            if (c.isTerm) {
+                Term term = terms.get(termOf[c.node]);
+                if (!term.bookIds.isEmpty() && seen.add(termOf[c.node])) {
+                    List<String> sample = new ArrayList<>(Math.min(SAMPLE_IDS, term.bookIds.size()));
+                    for (String id : term.bookIds) {
+                        if (sample.size() == SAMPLE_IDS) break;
+                        sample.add(id);
+                    }
+                    result.add(new Suggestion(term.text, term.loans, c.edits, sample, term.bookIds.size()));
+                }
+                continue;
+            }
+            if (termOf[c.node] != NONE) {
+                queue.add(new Candidate(c.node, c.edits, terms.get(termOf[c.node]).loans, true));
+            }
+            for (int child = firstChild[c.node]; child != NONE; child = nextSibling[child]) {
+                queue.add(new Candidate(child, c.edits, best[child], false));
+            }
+        }
+        return result;
+    }
+
+    // Fewest edits first, then highest score; a term beats a subtree with the
+    // same bound so exact scores surface as soon as they are known
+    private static final class Candidate implements Comparable<Candidate> {
+        final int node;
+        final int edits;
+        final long score;
+        final boolean isTerm;
+
+        Candidate(int node, int edits, long score, boolean isTerm) {
+            this.node = node;
+            this.edits = edits;
+            this.score = score;
+            this.isTerm = isTerm;
+        }
+
+        @Override
+        public int compareTo(Candidate o) {
+            if (edits != o.edits) return Integer.compare(edits, o.edits);
+            if (score != o.score) return Long.compare(o.score, score);
+            return Boolean.compare(o.isTerm, isTerm);
+        }
+    }
+
+    private void addLoans(String bookId, long delta) {
+        if (delta == 0) return;
+        loansByBook.merge(bookId, delta, Long::sum);
+        String[] keys = indexedText.get(bookId);
+        if (keys == null) return;
+        for (int i = 0; i < keys.length; i++) {
+            int node = find(keys[i]);
+            Term term = terms.get(termOf[node]);
+            term.loans += delta;
+            raise(keys[i], term.loans);
+        }
+    }
+
+    // Lifts the bound of every node on key's path to at least score
+    private void raise(String key, long score) {
+        int node = ROOT;
+        int i = 0;
+        best[ROOT] = Math.max(best[ROOT], score);
+        while (i < key.length()) {
+            node = child(node, key.charAt(i));
+            best[node] = Math.max(best[node], score);
+            i += labelLength[node];
+        }
+    }
+
+    // Unlinks the nodes at the end of key's path that no longer lead to a term
+    private void prune(String key) {
+        int[] path = new int[key.length() + 1];
+        int depth = 0;
+        path[0] = ROOT;
+        for (int i = 0; i < key.length(); i += labelLength[path[depth]]) {
+            path[++depth] = child(path[depth - 1], key.charAt(i));
+        }
+        for (; depth > 0; depth--) {
+            int node = path[depth];
+            if (termOf[node] != NONE || firstChild[node] != NONE) return;
+            int parent = path[depth - 1];
+            if (firstChild[parent] == node) {
+                firstChild[parent] = nextSibling[node];
+            } else {
+                int prev = firstChild[parent];
+                while (nextSibling[prev] != node) prev = nextSibling[prev];
+                nextSibling[prev] = nextSibling[node];
+            }
+            deadChars += labelLength[node];
+            if (freeNodeCount == freeNodes.length) freeNodes = Arrays.copyOf(freeNodes, freeNodeCount * 2);
+            freeNodes[freeNodeCount++] = node;
+        }
+    }
+
+    // Copies the labels still in the tree into a fresh pool
+    private void compactPool() {
+        char[] live = new char[Math.max(1 << 12, poolSize - deadChars)];
+        int size = 0;
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = ROOT;
+        while (top > 0) {
+            int node = stack[--top];
+            System.arraycopy(pool, labelStart[node], live, size, labelLength[node]);
+            labelStart[node] = size;
+            size += labelLength[node];
+            for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+                if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+                stack[top++] = child;
+            }
+        }
+        pool = live;
+        poolSize = size;
+        deadChars = 0;
+    }
+
+    // Node whose term is exactly key, or NONE
+    private int find(String key) {
+        int node = ROOT;
+        int i = 0;
+        while (i < key.length()) {
+            node = child(node, key.charAt(i));
+            if (node == NONE || !labelMatches(node, key, i, labelLength[node])) return NONE;
+            i += labelLength[node];
+        }
+        return node;
+    }
+
+    // Highest node whose subtree holds exactly the terms starting with prefix
+    private int locate(String prefix) {
+        int node = ROOT;
+        int i = 0;
+        while (i < prefix.length()) {
+            node = child(node, prefix.charAt(i));
+            if (node == NONE) return NONE;
+            int n = Math.min(labelLength[node], prefix.length() - i);
+            if (!labelMatches(node, prefix, i, n)) return NONE;
+            i += n;
+        }
+        return node;
+    }
+
+    private boolean labelMatches(int node, String key, int from, int n) {
+        if (from + n > key.length()) return false;
+        int start = labelStart[node];
+        for (int j = 0; j < n; j++) {
+            if (pool[start + j] != key.charAt(from + j)) return false;
+        }
+        return true;
+    }
+
+    private int child(int node, char c) {
+        for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+            if (pool[labelStart[child]] == c) return child;
+        }
+        return NONE;
+    }
+
+    // Term ID for key, creating nodes (and the term) as needed
+    private int insert(String key, String display) {
+        int node = ROOT;
+        int i = 0;
+        while (i < key.length()) {
+            char c = key.charAt(i);
+            int prev = NONE;
+            int child = firstChild[node];
+            while (child != NONE && pool[labelStart[child]] != c) {
+                prev = child;
+                child = nextSibling[child];
+            }
+            if (child == NONE) {
+                int leaf = newNode(append(key, i), key.length() - i);
+                nextSibling[leaf] = firstChild[node];
+                firstChild[node] = leaf;
+                node = leaf;
+                break;
+            }
+            int start = labelStart[child];
+            int length = labelLength[child];
+            int l = 0;
+            while (l < length && i + l < key.length() && pool[start + l] == key.charAt(i + l)) l++;
+            if (l < length) {
+                // Split: a new node takes the shared part of the label
+                int mid = newNode(start, l);
+                best[mid] = best[child];
+                nextSibling[mid] = nextSibling[child];
+                if (prev == NONE) firstChild[node] = mid;
+                else nextSibling[prev] = mid;
+                firstChild[mid] = child;
+                nextSibling[child] = NONE;
+                labelStart[child] = start + l;
+                labelLength[child] = length - l;
+                child = mid;
+            }
+            node = child;
+            i += l;
+        }
+        if (termOf[node] == NONE) {
+            Term term = new Term(display);
+            if (freeTerms.isEmpty()) {
+                termOf[node] = terms.size();
+                terms.add(term);
+            } else {
+                termOf[node] = freeTerms.remove(freeTerms.size() - 1);
+                terms.set(termOf[node], term);
+            }
+        }
+        return termOf[node];
+    }
+
+    private int append(String key, int from) {
+        int n = key.length() - from;
+        if (poolSize + n > pool.length) pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + n));
+        key.getChars(from, key.length(), pool, poolSize);
+        poolSize += n;
+        return poolSize - n;
+    }
+
+    private int newNode(int start, int length) {
+        int node = freeNodeCount > 0 ? freeNodes[--freeNodeCount] : newSlot();
+        labelStart[node] = start;
+        labelLength[node] = length;
+        firstChild[node] = NONE;
+        nextSibling[node] = NONE;
+        termOf[node] = NONE;
+        best[node] = 0;
+        return node;
+    }
+
+    private int newSlot() {
+        if (nodeCount == labelStart.length) {
+            int size = nodeCount * 2;
+            labelStart = Arrays.copyOf(labelStart, size);
+            labelLength = Arrays.copyOf(labelLength, size);
+            firstChild = Arrays.copyOf(firstChild, size);
+            nextSibling = Arrays.copyOf(nextSibling, size);
+            termOf = Arrays.copyOf(termOf, size);
+            best = Arrays.copyOf(best, size);
+        }
+        return nodeCount++;
+    }
+}
@@ -0,0 +1,131 @@
+package library;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Reads the comma-separated data files by memory-mapping them and parsing
+// newline-aligned chunks in parallel on a fork-join pool. Records come back
+// in file order.
+public class DataFileLoader {
+    private static final long MIN_CHUNK_BYTES = 1 << 20;
+    private static final int NEWLINE_WINDOW = 1 << 16;
+
+    private final ForkJoinPool pool;
+
+    public DataFileLoader() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public DataFileLoader(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public <T> CompletableFuture<List<T>> readAsync(Path path, Function<String[], T> mapper) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return read(path, mapper);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, pool);
+    }
+
+    public <A> CompletableFuture<List<A>> readChunksAsync(Path path, Supplier<A> newChunk,
+                                                         BiConsumer<A, String[]> parser) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return readChunks(path, newChunk, parser);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, pool);
+    }
+
+    // mapper turns the fields of one trimmed, non-blank line into a record, or
+    // returns null to skip the line.
+    public <T> List<T> read(Path path, Function<String[], T> mapper) throws IOException {
+        List<T> records = new ArrayList<>();
+        List<List<T>> chunks = readChunks(path, ArrayList<T>::new, (rows, fields) -> {
+            T record = mapper.apply(fields);
+            if (record != null) rows.add(record);
+        });
+        for (List<T> chunk : chunks) {
+            records.addAll(chunk);
+        }
+        return records;
+    }
+
+    // Lower-level form of read: each chunk gets its own accumulator from
+    // newChunk, parser folds the chunk's lines into it, and the accumulators
+    // come back in file order.
+    public <A> List<A> readChunks(Path path, Supplier<A> newChunk, BiConsumer<A, String[]> parser) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<ForkJoinTask<A>> tasks = new ArrayList<>();
+            long chunk = Math.max(MIN_CHUNK_BYTES, size / (pool.getParallelism() * 4L));
+            long start = 0;
+            while (start < size) {
+                long end = start + chunk >= size ? size : lineStartAfter(channel, start + chunk, size);
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                tasks.add(pool.submit(() -> parseChunk(buf, newChunk.get(), parser)));
+                start = end;
+            }
+            List<A> chunks = new ArrayList<>();
+            for (ForkJoinTask<A> task : tasks) {
+                chunks.add(task.join());
+            }
+            return chunks;
+        }
+    }
+
+    public static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw e;
+        }
+    }
+
+    private static long lineStartAfter(FileChannel channel, long pos, long size) throws IOException {
+        while (pos < size) {
+            int len = (int) Math.min(NEWLINE_WINDOW, size - pos);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, pos, len);
+            for (int i = 0; i < len; i++) {
+                if (window.get(i) == '\n') return pos + i + 1;
+            }
+            pos += len;
+        }
+        return size;
+    }
+
+    private static <A> A parseChunk(MappedByteBuffer buf, A records, BiConsumer<A, String[]> parser) {
+        String text = StandardCharsets.UTF_8.decode(buf).toString();
+        int lineStart = 0;
+        while (lineStart < text.length()) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            if (lineEnd < 0) lineEnd = text.length();
+            String line = text.substring(lineStart, lineEnd).trim();
+            lineStart = lineEnd + 1;
+            if (line.isEmpty()) continue;
+            parser.accept(records, line.split(",", -1));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,89 @@
+package library;
+
+import java.time.LocalDate;
+
+// A patron's place in the queue for a book. A WAITING hold lapses if no copy
+// comes back in time; a READY hold has a copy set aside for its patron until
+// it expires. Holds are immutable: a change is a new Hold with the same ID.
+public class Hold {
+    public enum Status { WAITING, READY }
+
+    private final String holdId;
+    private final long number;
+    private final String userId;
+    private final String bookId;
+    // Higher is served first; equal priorities are served in placement order
+    private final int priority;
+    private final LocalDate placed;
+    private final Status status;
+    private final LocalDate expires;
+
+    public Hold(String holdId, String userId, String bookId, int priority, LocalDate placed,
+                Status status, LocalDate expires) {
+        this.holdId = holdId;
+        this.number = Long.parseLong(holdId.substring(1));
+        this.userId = userId;
+        this.bookId = bookId;
+        this.priority = priority;
+        this.placed = placed;
+        this.status = status;
+        this.expires = expires;
+    }
+
+    // Format: H12,U001,B002,0,2025-10-14,WAITING,2025-11-13
+    public static Hold fromRecord(String[] parts) {
+        return new Hold(parts[0], parts[1], parts[2], Integer.parseInt(parts[3].trim()), LocalDate.parse(parts[4]),
+                Status.valueOf(parts[5].trim()), LocalDate.parse(parts[6]));
+    }
+
+    public String[] toRecord() {
+        return new String[]{holdId, userId, bookId, String.valueOf(priority), placed.toString(),
+                status.name(), expires.toString()};
+    }
+
+    public String toDisplayString() {
+        return String.format("%s | User: %s | Book: %s | Priority: %d | Placed: %s | %s until %s",
+                holdId, userId, bookId, priority, placed, status == Status.READY ? "Ready" : "Waiting", expires);
+    }
+
+    // The same hold with a copy set aside until expires
+    public Hold ready(LocalDate expires) {
+        return new Hold(holdId, userId, bookId, priority, placed, Status.READY, expires);
+    }
+
+    public String getHoldId() {
+        return holdId;
+    }
+
+    public long getNumber() {
+        return number;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getBookId() {
+        return bookId;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public LocalDate getPlaced() {
+        return placed;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isReady() {
+        return status == Status.READY;
+    }
+
+    public LocalDate getExpires() {
+        return expires;
+    }
+}
@@ -0,0 +1,172 @@
+package library;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// Hold queues per book. Safe for concurrent use: every method holds the
+// repository's monitor. The next holder of a book is the first entry of its
+// queue and the next hold to lapse is the first entry of byExpiry, so handing
+// a copy on and sweeping k expired holds cost O(log n) and O(k log n).
+public class HoldRepository {
+    private static final Comparator<Hold> QUEUE_ORDER = Comparator
+            .comparingInt(Hold::getPriority).reversed()
+            .thenComparingLong(Hold::getNumber);
+    private static final Comparator<Hold> EXPIRY_ORDER = Comparator
+            .comparing(Hold::getExpires)
+            .thenComparingLong(Hold::getNumber);
+
+    // Every hold by ID, in placement order (the order of holds.txt)
+    private final Map<String, Hold> holdsById = new TreeMap<>(
+            Comparator.comparingLong((String id) -> Long.parseLong(id.substring(1))));
+    private final Map<String, NavigableSet<Hold>> waitingByBook = new HashMap<>();
+    private final Map<String, List<Hold>> holdsByUser = new HashMap<>();
+    private final NavigableSet<Hold> byExpiry = new TreeSet<>(EXPIRY_ORDER);
+    // Highest hold number handed out, kept across saves (see saveSequence) so
+    // the number of a removed hold is not given out again
+    private long lastNumber = 0;
+    private boolean changed = false;
+
+    // Queues a new hold; null if the user already holds this book
+    public synchronized Hold place(String userId, String bookId, int priority, LocalDate today, LocalDate expires) {
+        if (find(userId, bookId) != null) return null;
+        Hold h = new Hold("H" + (lastNumber + 1), userId, bookId, priority, today, Hold.Status.WAITING, expires);
+        put(h);
+        return h;
+    }
+
+    // Adds or replaces (by ID) a hold as loaded or replayed; returns the one replaced
+    public synchronized Hold put(Hold h) {
+        Hold old = remove(h.getHoldId());
+        holdsById.put(h.getHoldId(), h);
+        if (!h.isReady()) waitingByBook.computeIfAbsent(h.getBookId(), b -> new TreeSet<>(QUEUE_ORDER)).add(h);
+        holdsByUser.computeIfAbsent(h.getUserId(), u -> new ArrayList<>(2)).add(h);
+        byExpiry.add(h);
+        lastNumber = Math.max(lastNumber, h.getNumber());
+        changed = true;
+        return old;
+    }
+
+    public synchronized Hold remove(String holdId) {
+        Hold h = holdsById.remove(holdId);
+        if (h == null) return null;
+        if (!h.isReady()) {
+            NavigableSet<Hold> queue = waitingByBook.get(h.getBookId());
+            queue.remove(h);
+            if (queue.isEmpty()) waitingByBook.remove(h.getBookId());
+        }
+        List<Hold> mine = holdsByUser.get(h.getUserId());
+        mine.remove(h);
+        if (mine.isEmpty()) holdsByUser.remove(h.getUserId());
+        byExpiry.remove(h);
+        changed = true;
+        return h;
+    }
+
+    // The next holder of bookId, or null if nobody is waiting
+    public synchronized Hold firstWaiting(String bookId) {
+        NavigableSet<Hold> queue = waitingByBook.get(bookId);
+        return queue == null ? null : queue.first();
+    }
+
+    // Puts replacement (same ID) in place of current, if current is still the
+    // stored hold; false if it was changed or removed in between
+    public synchronized boolean replace(Hold current, Hold replacement) {
+        if (holdsById.get(current.getHoldId()) != current) return false;
+        put(replacement);
+        return true;
+    }
+
+    // Removes and returns the user's READY hold on bookId, if there is one
+    public synchronized Hold takeReady(String userId, String bookId) {
+        Hold h = find(userId, bookId);
+        if (h == null || !h.isReady()) return null;
+        return remove(h.getHoldId());
+    }
+
+    public synchronized Hold find(String userId, String bookId) {
+        for (Hold h : holdsByUser.getOrDefault(userId, List.of())) {
+            if (h.getBookId().equals(bookId)) return h;
+        }
+        return null;
+    }
+
+    public synchronized List<Hold> findByUser(String userId) {
+        return new ArrayList<>(holdsByUser.getOrDefault(userId, List.of()));
+    }
+
+    // The holds on one book: copies set aside first, then the queue in service order
+    public synchronized List<Hold> findByBook(String bookId) {
+        List<Hold> result = new ArrayList<>();
+        for (Hold h : holdsById.values()) {
+            if (h.isReady() && h.getBookId().equals(bookId)) result.add(h);
+        }
+        result.addAll(waitingByBook.getOrDefault(bookId, new TreeSet<>()));
+        return result;
+    }
+
+    // 1 for the next holder; 0 for a hold that is not waiting
+    public synchronized int queuePosition(Hold h) {
+        NavigableSet<Hold> queue = waitingByBook.get(h.getBookId());
+        if (queue == null || !queue.contains(h)) return 0;
+        return queue.headSet(h, false).size() + 1;
+    }
+
+    public synchronized List<String> findBooksWithQueues() {
+        return new ArrayList<>(waitingByBook.keySet());
+    }
+
+    // Removes and returns every hold whose last day is before today
+    public synchronized List<Hold> removeExpired(LocalDate today) {
+        List<Hold> expired = new ArrayList<>();
+        while (!byExpiry.isEmpty() && byExpiry.first().getExpires().isBefore(today)) {
+            expired.add(remove(byExpiry.first().getHoldId()));
+        }
+        return expired;
+    }
+
+    public synchronized List<Hold> findAll() {
+        return new ArrayList<>(holdsById.values());
+    }
+
+    public synchronized int size() {
+        return holdsById.size();
+    }
+
+    public synchronized void clear() {
+        holdsById.clear();
+        waitingByBook.clear();
+        holdsByUser.clear();
+        byExpiry.clear();
+        lastNumber = 0;
+        changed = true;
+    }
+
+    public synchronized void loadSequence(Path path) throws IOException {
+        if (!Files.exists(path)) return;
+        String text = Files.readString(path).trim();
+        if (!text.isEmpty()) lastNumber = Math.max(lastNumber, Long.parseLong(text));
+    }
+
+    public synchronized void saveSequence(Path path) throws IOException {
+        AtomicFiles.replace(path, Long.toString(lastNumber).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public synchronized boolean hasChanges() {
+        return changed;
+    }
+
+    public synchronized void markClean() {
+        changed = false;
+    }
+}
@@ -0,0 +1,83 @@
+package library;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Log-linear histogram of non-negative values (nanoseconds), in the manner of
+// HdrHistogram: each power-of-two range is split into SUB_BUCKETS equal
+// buckets, so any recorded value is reported to within about 3%. Recording
+// is a few atomic increments on preallocated arrays and never allocates.
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Group 0 holds 0..SUB_BUCKETS-1 exactly; group g >= 1 holds [2^(g+4), 2^(g+5))
+    private static final int GROUPS = 64 - SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(GROUPS * SUB_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long seen = max.get();
+        while (value > seen && !max.compareAndSet(seen, value)) {
+            seen = max.get();
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    // Smallest bucket bound at or below which `percentile` percent of the
+    // values fall. Concurrent recording may make it off by the in-flight values.
+    public long getPercentile(double percentile) {
+        long n = count.get();
+        if (n == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(n * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) return Math.min(highestValueAt(i), max.get());
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int group = exponent - SUB_BUCKET_BITS + 1;
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+        return group * SUB_BUCKETS + sub;
+    }
+
+    static long highestValueAt(int index) {
+        int group = index / SUB_BUCKETS;
+        if (group == 0) return index;
+        long width = 1L << (group - 1);
+        long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (group - 1);
+        return lowest + width - 1;
+    }
+}
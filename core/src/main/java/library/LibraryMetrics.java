@@ -0,0 +1,135 @@
+package library;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Latency histograms, call and error counts per operation, published as JMX
+// MBeans under "library:*" and optionally written to a file at an interval.
+// Callers take start() before the operation and pass it to record() after;
+// neither allocates. -Dlibrary.metrics=false turns recording off.
+public class LibraryMetrics {
+    public enum Operation {
+        LOGIN, SEARCH, BORROW, RETURN, LOAD, HISTORY, SAVE;
+
+        String label() {
+            return name().toLowerCase();
+        }
+    }
+
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("library.metrics", "true"));
+
+    private final OperationStats[] stats = new OperationStats[Operation.values().length];
+    private final List<ObjectName> registered = new ArrayList<>();
+    private LibraryStatsMBean sizes;
+    private ScheduledExecutorService snapshots;
+
+    public LibraryMetrics() {
+        for (Operation op : Operation.values()) {
+            stats[op.ordinal()] = new OperationStats(op.label());
+        }
+    }
+
+    public long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    public void record(Operation op, long start, boolean success) {
+        if (!ENABLED) return;
+        stats[op.ordinal()].record(System.nanoTime() - start, success);
+    }
+
+    public OperationStats get(Operation op) {
+        return stats[op.ordinal()];
+    }
+
+    public void setSizes(LibraryStatsMBean sizes) {
+        this.sizes = sizes;
+    }
+
+    // Replaces beans left behind by an earlier instance in the same JVM
+    public synchronized void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (OperationStats s : stats) {
+                register(server, new ObjectName("library:type=Operation,name=" + s.getName()), s);
+            }
+            if (sizes != null) register(server, new ObjectName("library:type=Library"), sizes);
+        } catch (JMException e) {
+            System.err.println("Could not register metrics with JMX: " + e.getMessage());
+        }
+    }
+
+    private void register(MBeanServer server, ObjectName name, Object bean) throws JMException {
+        if (server.isRegistered(name)) server.unregisterMBean(name);
+        server.registerMBean(bean, name);
+        registered.add(name);
+    }
+
+    // Rewrites path with the current report every intervalSeconds
+    public synchronized void startSnapshots(Path path, long intervalSeconds) {
+        if (intervalSeconds <= 0 || snapshots != null) return;
+        snapshots = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        snapshots.scheduleWithFixedDelay(() -> {
+            try {
+                writeSnapshot(path);
+            } catch (IOException e) {
+                System.err.println("Error writing metrics to " + path + ": " + e.getMessage());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public void writeSnapshot(Path path) throws IOException {
+        String text = "Metrics at " + LocalDateTime.now().withNano(0) + "\n" + report();
+        AtomicFiles.replace(path, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public synchronized void close() {
+        if (snapshots != null) {
+            snapshots.shutdownNow();
+            snapshots = null;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered) {
+            try {
+                if (server.isRegistered(name)) server.unregisterMBean(name);
+            } catch (JMException e) {
+                System.err.println("Could not unregister " + name + ": " + e.getMessage());
+            }
+        }
+        registered.clear();
+    }
+
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-8s %9s %7s %10s %10s %10s %10s %10s %10s %9s%n",
+                "Op", "Count", "Errors", "Mean(us)", "p50(us)", "p90(us)", "p99(us)", "p99.9(us)", "Max(us)", "Ops/s"));
+        for (OperationStats s : stats) {
+            sb.append(String.format("%-8s %9d %7d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f %9.2f%n",
+                    s.getName(), s.getCount(), s.getErrors(), s.getMeanMicros(), s.getP50Micros(),
+                    s.getP90Micros(), s.getP99Micros(), s.getP999Micros(), s.getMaxMicros(), s.getThroughput()));
+        }
+        if (sizes != null) {
+            sb.append(String.format("Books: %d | Users: %d | Transactions: %d (+%d archived) | Open loans: %d%n",
+                    sizes.getBooks(), sizes.getUsers(), sizes.getTransactions(),
+                    sizes.getArchivedTransactions(), sizes.getOpenLoans()));
+            sb.append(String.format("Search cache: %d hits | %d misses | %d evictions%n",
+                    sizes.getSearchCacheHits(), sizes.getSearchCacheMisses(), sizes.getSearchCacheEvictions()));
+        }
+        return sb.toString();
+    }
+}
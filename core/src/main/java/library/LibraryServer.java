@@ -0,0 +1,64 @@
+package library;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Headless service mode: accepts sessions on a loopback socket and runs each
+// one on its own thread against the shared LibraryService.
+public class LibraryServer {
+    private final LibraryService service;
+    private final int port;
+    private final ExecutorService sessions = newSessionExecutor();
+    private volatile ServerSocket serverSocket;
+
+    public LibraryServer(LibraryService service, int port) {
+        this.service = service;
+        this.port = port;
+    }
+
+    // Blocks accepting connections until stop() is called
+    public void serve() throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        System.out.println("Library service listening on " + serverSocket.getLocalSocketAddress());
+        try {
+            while (!serverSocket.isClosed()) {
+                Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (SocketException e) {
+                    break; // closed by stop()
+                }
+                sessions.execute(new ClientSession(service, socket));
+            }
+        } finally {
+            sessions.shutdown();
+        }
+    }
+
+    public void stop() {
+        try {
+            if (serverSocket != null) serverSocket.close();
+            sessions.shutdown();
+            sessions.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (IOException e) {
+            System.err.println("Error closing service socket: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ExecutorService newSessionExecutor() {
+        try {
+            // One virtual thread per session where the runtime has them (Java 21+)
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
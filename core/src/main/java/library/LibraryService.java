@@ -0,0 +1,739 @@
+package library;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import library.LibraryMetrics.Operation;
+
+// Thread-safe core shared by the console and every service-mode session.
+// Reads, borrows and returns run under a shared lock. Taking or putting back
+// a copy is a compare-and-set on the Book, so checking availability never
+// waits on another loan. The rest of a loan does: the patron's monitor (for
+// the borrow limit), the log's group commit, and the brief updates to the
+// transaction repository, CirculationStats and CompletionIndex, each of which
+// holds its own monitor. Concurrent borrows therefore queue on those, one
+// short critical section at a time. Catalogue and user changes run under
+// the exclusive lock.
+public class LibraryService {
+    public static final int MAX_BORROWED = 3;
+    // A loan is due this many days after it was borrowed
+    public static final int LOAN_DAYS = Integer.getInteger("library.loanDays", 14);
+    // A hold lapses if no copy comes back within HOLD_DAYS of placing it; a copy
+    // set aside for a holder waits HOLD_PICKUP_DAYS before passing to the next
+    public static final int HOLD_DAYS = Integer.getInteger("library.holdDays", 30);
+    public static final int HOLD_PICKUP_DAYS = Integer.getInteger("library.holdPickupDays", 3);
+    private static final String UNAVAILABLE = "Book is currently unavailable. You can place a hold on it.";
+    // How long a verified login is remembered; 0 disables the login cache
+    private static final long LOGIN_CACHE_SECONDS = Long.getLong("library.loginCacheSeconds", 300);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final BookRepository books;
+    private final UserRepository users;
+    private final TransactionRepository transactions;
+    private final HoldRepository holds;
+    private final TransactionIdAllocator transactionIds;
+    private final TransactionArchive archive;
+    private final WriteAheadLog log;
+    private final LibraryMetrics metrics;
+    private final CirculationStats circulation;
+    // Set while the transaction history is still loading at start-up (null
+    // when it is loaded); operations that read or add to it wait for it
+    private final CompletableFuture<Void> history;
+    private final LoginCache loginCache = new LoginCache(LOGIN_CACHE_SECONDS);
+
+    public LibraryService(BookRepository books, UserRepository users, TransactionRepository transactions,
+                          HoldRepository holds, TransactionIdAllocator transactionIds, TransactionArchive archive, WriteAheadLog log,
+                          LibraryMetrics metrics, CirculationStats circulation, CompletableFuture<Void> history) {
+        this.books = books;
+        this.users = users;
+        this.transactions = transactions;
+        this.holds = holds;
+        this.transactionIds = transactionIds;
+        this.archive = archive;
+        this.log = log;
+        this.metrics = metrics;
+        this.circulation = circulation;
+        this.history = history;
+    }
+
+    // The public operations time themselves; a failed result or an exception
+    // counts as an error
+    public User login(String username, String password) {
+        long start = metrics.start();
+        User user = null;
+        try {
+            user = authenticate(username, password);
+            return user;
+        } finally {
+            metrics.record(Operation.LOGIN, start, user != null);
+        }
+    }
+
+    // Hashing is slow on purpose, so it runs outside the lock
+    private User authenticate(String username, String password) {
+        String name = UserRepository.foldName(username);
+        long generation = loginCache.generation();
+        String cachedId = loginCache.lookup(name, password);
+        if (cachedId != null) {
+            User u = shared(() -> users.findById(cachedId));
+            if (u != null) return u;
+        }
+        List<User> candidates = shared(() -> users.findByName(name));
+        if (candidates.isEmpty()) {
+            PasswordHasher.verifyNothing(password);
+            return null;
+        }
+        for (User u : candidates) {
+            String stored = u.getPasswordHash();
+            if (!PasswordHasher.verify(password, stored)) continue;
+            if (!PasswordHasher.isHash(stored)) upgradePassword(u, stored, PasswordHasher.hash(password));
+            loginCache.put(name, u.getId(), password, generation);
+            return u;
+        }
+        return null;
+    }
+
+    // Replaces a legacy plaintext password once its owner has proved they know it
+    private void upgradePassword(User u, String stored, String hash) {
+        exclusive(() -> {
+            if (users.findById(u.getId()) != u || !u.getPasswordHash().equals(stored)) return null;
+            try {
+                logChange("PUT_USER", u.getId(), u.getName(), hash, u.getRole());
+            } catch (IOException e) {
+                // Stays plaintext until a later login
+                System.err.println("Error writing to the change log: " + e.getMessage());
+                return null;
+            }
+            u.setPasswordHash(hash);
+            return null;
+        });
+    }
+
+    public OperationResult borrowBook(User user, String bookId) {
+        return borrowBook(user, bookId, null);
+    }
+
+    // ids, when not null, is the caller's own block of transaction IDs (see newIdBlock)
+    public OperationResult borrowBook(User user, String bookId, TransactionIdAllocator.Block ids) {
+        long start = metrics.start();
+        OperationResult result = null;
+        try {
+            result = doBorrowBook(user, bookId, ids);
+            return result;
+        } finally {
+            metrics.record(Operation.BORROW, start, result != null && result.isSuccess());
+        }
+    }
+
+    private OperationResult doBorrowBook(User user, String bookId, TransactionIdAllocator.Block ids) {
+        awaitHistory();
+        return shared(() -> {
+            Book book = books.findById(bookId);
+            if (book == null) return OperationResult.fail("Book not found.");
+            // A copy set aside by the user's hold is already out of stock
+            Hold held = holds.find(user.getId(), bookId);
+            boolean setAside = held != null && held.isReady();
+            if (!setAside && !book.isAvailable()) return OperationResult.fail(UNAVAILABLE);
+            Hold taken = null;
+            synchronized (user) {
+                if (user.getBorrowedBooks().size() >= MAX_BORROWED) {
+                    return OperationResult.fail("You cannot borrow more than " + MAX_BORROWED + " books at once.");
+                }
+                if (user.getBorrowedBooks().contains(bookId)) {
+                    return OperationResult.fail("You have already borrowed this book.");
+                }
+                if (setAside ? (taken = holds.takeReady(user.getId(), bookId)) == null : !book.tryCheckout()) {
+                    return OperationResult.fail(UNAVAILABLE);
+                }
+                user.borrowBook(bookId);
+            }
+            String newTId = ids != null ? ids.next() : transactionIds.next();
+            LocalDate today = LocalDate.now();
+            try {
+                logChange("BORROW", newTId, user.getId(), bookId, today.toString());
+            } catch (IOException e) {
+                synchronized (user) {
+                    user.returnBook(bookId);
+                }
+                if (taken != null) {
+                    holds.put(taken);
+                } else {
+                    book.checkin();
+                }
+                return notLogged(e);
+            }
+            Transaction t = transactions.add(newTId, user.getId(), bookId, today, null);
+            if (circulation != null) circulation.recordBorrow(t);
+            books.getCompletions().recordLoan(bookId);
+            // Borrowed without waiting for the queue (a copy was spare), so the hold is done with
+            if (held != null && !setAside) {
+                try {
+                    dropHold(held, today);
+                } catch (IOException e) {
+                    System.err.println("Error writing to the change log: " + e.getMessage());
+                }
+            }
+            return OperationResult.ok("Book borrowed successfully! Transaction ID: " + newTId);
+        });
+    }
+
+    // For bulk callers such as batch sessions, which borrow many books each;
+    // a block belongs to one caller
+    public TransactionIdAllocator.Block newIdBlock(int size) {
+        return transactionIds.newBlock(size);
+    }
+
+    public OperationResult returnBook(User user, String bookId) {
+        long start = metrics.start();
+        OperationResult result = null;
+        try {
+            result = doReturnBook(user, bookId);
+            return result;
+        } finally {
+            metrics.record(Operation.RETURN, start, result != null && result.isSuccess());
+        }
+    }
+
+    private OperationResult doReturnBook(User user, String bookId) {
+        awaitHistory();
+        return shared(() -> {
+            LocalDate today = LocalDate.now();
+            Transaction t;
+            synchronized (user) {
+                if (!user.getBorrowedBooks().contains(bookId)) {
+                    return OperationResult.fail("You have not borrowed this book.");
+                }
+                // A row found just before the table was rebuilt is stale; look again once
+                t = transactions.findOpenLoan(user.getId(), bookId);
+                if (t != null && !transactions.markReturned(t, today)) {
+                    t = transactions.findOpenLoan(user.getId(), bookId);
+                    if (t != null && !transactions.markReturned(t, today)) t = null;
+                }
+                if (t == null) return OperationResult.fail("Transaction not found for this book/user.");
+                try {
+                    logChange("RETURN", t.getTransactionId(), user.getId(), bookId, today.toString());
+                } catch (IOException e) {
+                    transactions.reopen(t);
+                    return notLogged(e);
+                }
+                user.returnBook(bookId);
+            }
+            // The copy goes to the next holder, if anyone is waiting, instead of back on the shelf
+            Book b = books.findById(bookId);
+            Hold next = b == null ? null : passOn(b, today.plusDays(HOLD_PICKUP_DAYS));
+            if (circulation != null) circulation.recordReturn(t);
+            return OperationResult.ok("Book returned successfully. Transaction updated: " + t.getTransactionId()
+                    + (next != null ? " (set aside for " + next.getUserId() + ", who has a hold on it)" : ""));
+        });
+    }
+
+    public OperationResult placeHold(User user, String bookId) {
+        return placeHold(user, bookId, 0);
+    }
+
+    // Holds with a higher priority are served first (e.g. set by staff for course reserves)
+    public OperationResult placeHold(User user, String bookId, int priority) {
+        return shared(() -> {
+            Book book = books.findById(bookId);
+            if (book == null) return OperationResult.fail("Book not found.");
+            synchronized (user) {
+                if (user.getBorrowedBooks().contains(bookId)) {
+                    return OperationResult.fail("You have already borrowed this book.");
+                }
+                if (book.isAvailable()) return OperationResult.fail("Book is available; borrow it instead.");
+                LocalDate today = LocalDate.now();
+                Hold h = holds.place(user.getId(), bookId, priority, today, today.plusDays(HOLD_DAYS));
+                if (h == null) return OperationResult.fail("You already have a hold on this book.");
+                try {
+                    logHold(h);
+                } catch (IOException e) {
+                    holds.remove(h.getHoldId());
+                    return notLogged(e);
+                }
+                return OperationResult.ok("Hold placed: " + h.getHoldId() + ", number " + holds.queuePosition(h)
+                        + " in the queue.");
+            }
+        });
+    }
+
+    public OperationResult cancelHold(User user, String bookId) {
+        return shared(() -> {
+            Hold h = holds.find(user.getId(), bookId);
+            try {
+                if (h == null || !dropHold(h, LocalDate.now())) return OperationResult.fail("You have no hold on this book.");
+            } catch (IOException e) {
+                return notLogged(e);
+            }
+            return OperationResult.ok("Hold cancelled.");
+        });
+    }
+
+    public List<Hold> findHolds(String userId) {
+        return holds.findByUser(userId);
+    }
+
+    // Copies set aside first, then the waiting queue in the order it will be served
+    public List<Hold> findHoldsOnBook(String bookId) {
+        return holds.findByBook(bookId);
+    }
+
+    public List<Hold> listHolds() {
+        return holds.findAll();
+    }
+
+    // 1 for the next holder of the book; 0 once a copy is set aside
+    public int queuePosition(Hold h) {
+        return holds.queuePosition(h);
+    }
+
+    // Drops holds that lapsed before today, passing their set-aside copies on,
+    // and sets aside copies that are on the shelf while holders wait (e.g. after
+    // copies were added). Returns the number of holds that lapsed. Holds whose
+    // removal cannot be logged are put back for the next sweep.
+    public int sweepHolds(LocalDate today) {
+        return shared(() -> {
+            List<Hold> expired = holds.removeExpired(today);
+            for (int i = 0; i < expired.size(); i++) {
+                Hold h = expired.get(i);
+                try {
+                    logChange("DELETE_HOLD", h.getHoldId());
+                } catch (IOException e) {
+                    System.err.println("Error writing to the change log: " + e.getMessage());
+                    for (Hold kept : expired.subList(i, expired.size())) holds.put(kept);
+                    return i;
+                }
+                if (h.isReady()) releaseCopy(h.getBookId(), today);
+            }
+            for (String bookId : holds.findBooksWithQueues()) {
+                Book b = books.findById(bookId);
+                while (b != null && b.tryCheckout()) {
+                    if (passOn(b, today.plusDays(HOLD_PICKUP_DAYS)) == null) break;
+                }
+            }
+            return expired.size();
+        });
+    }
+
+    // Removes a hold; a copy set aside for it goes to the next holder or back
+    // on the shelf. Nothing changes if the removal cannot be logged.
+    private boolean dropHold(Hold h, LocalDate today) throws IOException {
+        Hold removed = holds.remove(h.getHoldId());
+        if (removed == null) return false;
+        try {
+            logChange("DELETE_HOLD", removed.getHoldId());
+        } catch (IOException e) {
+            holds.put(removed);
+            throw e;
+        }
+        if (removed.isReady()) releaseCopy(removed.getBookId(), today);
+        return true;
+    }
+
+    private void releaseCopy(String bookId, LocalDate today) {
+        Book b = books.findById(bookId);
+        if (b != null) passOn(b, today.plusDays(HOLD_PICKUP_DAYS));
+    }
+
+    // Sets a copy of b that came free aside for the next holder, or puts it
+    // back on the shelf; returns the hold served, if any. A promotion that
+    // cannot be logged is undone and the copy shelved, as replaying the log
+    // would leave it.
+    private Hold passOn(Book b, LocalDate expires) {
+        while (true) {
+            Hold waiting = holds.firstWaiting(b.getBookId());
+            if (waiting == null) break;
+            Hold ready = waiting.ready(expires);
+            // Another copy of the book went to this holder first
+            if (!holds.replace(waiting, ready)) continue;
+            try {
+                logHold(ready);
+                return ready;
+            } catch (IOException e) {
+                System.err.println("Error writing to the change log: " + e.getMessage());
+                // Unless the holder has already borrowed the copy
+                if (!holds.replace(ready, waiting)) return null;
+                break;
+            }
+        }
+        b.checkin();
+        return null;
+    }
+
+    private void logHold(Hold h) throws IOException {
+        String[] record = h.toRecord();
+        String[] fields = new String[record.length + 1];
+        fields[0] = "PUT_HOLD";
+        System.arraycopy(record, 0, fields, 1, record.length);
+        logChange(fields);
+    }
+
+    public List<Book> searchBooks(String keyword) {
+        long start = metrics.start();
+        boolean ok = false;
+        try {
+            List<Book> found = shared(() -> books.search(keyword));
+            ok = true;
+            return found;
+        } finally {
+            metrics.record(Operation.SEARCH, start, ok);
+        }
+    }
+
+    // Pages through the catalogue in book ID order: skips `skip` books after
+    // the continuation token `after` (null for the start), then passes up to
+    // `limit` of them (all when limit <= 0) to action. Returns the token for
+    // the next page, or null when nothing is left.
+    public String listBooks(String after, long skip, int limit, Consumer<Book> action) {
+        return shared(() -> {
+            Page<Book> page = new Page<>(skip, limit, action);
+            books.scan(after == null || after.isEmpty() ? null : after, page);
+            return page.full ? page.last.getBookId() : null;
+        });
+    }
+
+    // Titles and authors starting with prefix, most borrowed first; when
+    // fewer than k match exactly, near misses fill the rest (see typoBudget)
+    public List<CompletionIndex.Suggestion> completeBooks(String prefix, int k) {
+        return shared(() -> {
+            CompletionIndex index = books.getCompletions();
+            List<CompletionIndex.Suggestion> result = index.complete(prefix, k);
+            int edits = typoBudget(prefix);
+            if (result.size() < k && edits > 0) {
+                for (CompletionIndex.Suggestion s : index.completeFuzzy(prefix, k, edits)) {
+                    if (result.size() == k) break;
+                    if (s.getEdits() > 0) result.add(s);
+                }
+            }
+            return result;
+        });
+    }
+
+    // Books whose title or author is a near miss for the keyword ("did you mean")
+    public List<Book> findSimilarBooks(String keyword, int k) {
+        return shared(() -> {
+            int edits = typoBudget(keyword);
+            List<Book> result = new ArrayList<>();
+            if (edits == 0) return result;
+            for (CompletionIndex.Suggestion s : books.getCompletions().completeFuzzy(keyword, k, edits)) {
+                for (String id : s.getBookIds()) {
+                    Book b = books.findById(id);
+                    if (b != null && !result.contains(b)) result.add(b);
+                }
+            }
+            return result;
+        });
+    }
+
+    // Edits tolerated in a query: none below 3 characters (almost anything
+    // would match), one up to 5, two beyond
+    private static int typoBudget(String query) {
+        int n = query.trim().length();
+        return n < 3 ? 0 : n <= 5 ? 1 : 2;
+    }
+
+    public Book findBook(String bookId) {
+        return shared(() -> books.findById(bookId));
+    }
+
+    public OperationResult addBook(String id, String title, String author, int copies) {
+        if (copies < 1) return OperationResult.fail("A book needs at least one copy.");
+        return exclusive(() -> {
+            Book b = new Book(id, title, author, copies, copies);
+            if (books.contains(id)) return OperationResult.fail("Book ID already exists.");
+            try {
+                logChange("PUT_BOOK", id, title, author, b.getInventoryField());
+            } catch (IOException e) {
+                return notLogged(e);
+            }
+            books.add(b);
+            return OperationResult.ok("Book added.");
+        });
+    }
+
+    // Blank title/author and null copies keep the current value
+    public OperationResult updateBook(String id, String title, String author, Integer copies) {
+        if (copies != null && copies < 1) return OperationResult.fail("A book needs at least one copy.");
+        return exclusive(() -> {
+            Book b = books.findById(id);
+            if (b == null) return OperationResult.fail("Book not found.");
+            String oldTitle = b.getTitle();
+            String oldAuthor = b.getAuthor();
+            int oldCopies = b.getTotalCopies();
+            if (!title.isEmpty()) b.setTitle(title);
+            if (!author.isEmpty()) b.setAuthor(author);
+            if (copies != null) b.setTotalCopies(copies);
+            try {
+                logChange("PUT_BOOK", b.getBookId(), b.getTitle(), b.getAuthor(), b.getInventoryField());
+            } catch (IOException e) {
+                // Nothing else changes copy counts under the exclusive lock, so this restores them exactly
+                b.setTitle(oldTitle);
+                b.setAuthor(oldAuthor);
+                b.setTotalCopies(oldCopies);
+                return notLogged(e);
+            }
+            books.update(b);
+            return OperationResult.ok("Book updated.");
+        });
+    }
+
+    public OperationResult deleteBook(String id) {
+        return exclusive(() -> {
+            if (!books.contains(id)) return OperationResult.fail("Book not found.");
+            try {
+                for (Hold h : holds.findByBook(id)) {
+                    logChange("DELETE_HOLD", h.getHoldId());
+                    holds.remove(h.getHoldId());
+                }
+                logChange("DELETE_BOOK", id);
+            } catch (IOException e) {
+                return notLogged(e);
+            }
+            books.remove(id);
+            return OperationResult.ok("Book deleted.");
+        });
+    }
+
+    public List<User> listUsers() {
+        return shared(() -> new ArrayList<>(users.findAll()));
+    }
+
+    public User findUser(String userId) {
+        return shared(() -> users.findById(userId));
+    }
+
+    public OperationResult addUser(String id, String name, String password, String role) {
+        String hash = PasswordHasher.hash(password);
+        return exclusive(() -> {
+            if (users.findById(id) != null) return OperationResult.fail("User ID already exists.");
+            try {
+                logChange("PUT_USER", id, name, hash, role);
+            } catch (IOException e) {
+                return notLogged(e);
+            }
+            users.add(new User(id, name, hash, role));
+            return OperationResult.ok("User added.");
+        });
+    }
+
+    // Blank fields keep the current value
+    public OperationResult updateUser(String id, String name, String password, String role) {
+        String hash = password.isEmpty() ? null : PasswordHasher.hash(password);
+        return exclusive(() -> {
+            User u = users.findById(id);
+            if (u == null) return OperationResult.fail("User not found.");
+            String newName = name.isEmpty() ? u.getName() : name;
+            String newHash = hash == null ? u.getPasswordHash() : hash;
+            String newRole = role.isEmpty() ? u.getRole() : role;
+            try {
+                logChange("PUT_USER", u.getId(), newName, newHash, newRole);
+            } catch (IOException e) {
+                return notLogged(e);
+            }
+            u.setName(newName);
+            u.setPasswordHash(newHash);
+            u.setRole(newRole);
+            users.update(u);
+            loginCache.invalidateUser(id);
+            return OperationResult.ok("User updated.");
+        });
+    }
+
+    public OperationResult deleteUser(String id) {
+        return exclusive(() -> {
+            if (users.findById(id) == null) return OperationResult.fail("User not found.");
+            try {
+                for (Hold h : holds.findByUser(id)) {
+                    dropHold(h, LocalDate.now());
+                }
+                logChange("DELETE_USER", id);
+            } catch (IOException e) {
+                return notLogged(e);
+            }
+            users.remove(id);
+            loginCache.invalidateUser(id);
+            return OperationResult.ok("User deleted.");
+        });
+    }
+
+    // History views hand rows to action one at a time: archived (older) rows
+    // first, streamed segment by segment, then the in-memory ones.
+    public void forEachTransaction(Consumer<Transaction> action) {
+        streamHistory(() -> archive.forEach(action), () -> transactions.forEach(action));
+    }
+
+    public void forEachTransactionByUser(String userId, Consumer<Transaction> action) {
+        streamHistory(() -> archive.forEachByUser(userId, action), () -> transactions.findByUser(userId).forEach(action));
+    }
+
+    public void forEachTransactionByBook(String bookId, Consumer<Transaction> action) {
+        streamHistory(() -> archive.forEachByBook(bookId, action), () -> transactions.findByBook(bookId).forEach(action));
+    }
+
+    // Loans borrowed from `from` to `to` inclusive: archived ones first, then
+    // the in-memory ones in borrow-date order
+    public void forEachTransactionBorrowedBetween(LocalDate from, LocalDate to, Consumer<Transaction> action) {
+        streamHistory(() -> archive.forEachBorrowedBetween(from.toEpochDay(), to.toEpochDay(), action),
+                () -> transactions.findBorrowedBetween(from, to).forEach(action));
+    }
+
+    // Open loans past their due date on `today`, most overdue first
+    public List<Transaction> findOverdueLoans(LocalDate today) {
+        awaitHistory();
+        return transactions.findOpenBorrowedBefore(today.minusDays(LOAN_DAYS));
+    }
+
+    // Open loans borrowed more than `days` days before `today`, oldest first
+    public List<Transaction> findOpenLoansOlderThan(int days, LocalDate today) {
+        awaitHistory();
+        return transactions.findOpenBorrowedBefore(today.minusDays(days));
+    }
+
+    // Null for read-only services that keep no statistics
+    public CirculationStats getCirculation() {
+        awaitHistory();
+        return circulation;
+    }
+
+    public static LocalDate dueDate(Transaction t) {
+        return t.getDateBorrowed().plusDays(LOAN_DAYS);
+    }
+
+    // Same paging for the whole history, archive first. Tokens name the next
+    // row's position, "A<segment>.<row>" in the archive or "H<generation>.<row>"
+    // in memory; neither kind of position moves while the listing is read.
+    public String listTransactions(String after, long skip, int limit, Consumer<Transaction> action) {
+        int[] from = parseCursor(after);
+        awaitHistory();
+        Page<Transaction> page = new Page<>(skip, limit, action);
+        try {
+            if (from[0] == 'A' && archive != null) {
+                int[] stop = archive.scan(from[1], from[2], page);
+                if (stop != null) return "A" + stop[0] + "." + stop[1];
+            }
+            int generation = from[0] == 'H' ? from[1] : transactions.generation();
+            int row = transactions.scan(generation, from[0] == 'H' ? from[2] : 0, page);
+            return row >= 0 ? "H" + generation + "." + row : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // {kind, segment or generation, row}
+    private static int[] parseCursor(String token) {
+        if (token == null || token.isEmpty()) return new int[]{'A', 0, 0};
+        char kind = token.charAt(0);
+        int dot = token.indexOf('.');
+        try {
+            if ((kind != 'A' && kind != 'H') || dot < 0) throw new NumberFormatException();
+            return new int[]{kind, Integer.parseInt(token.substring(1, dot)), Integer.parseInt(token.substring(dot + 1))};
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a continuation token: " + token);
+        }
+    }
+
+    // Skips, then takes up to limit rows; stops at the first row past a full
+    // page without consuming it, so a listing that ends exactly on a page
+    // boundary needs no extra empty page
+    private static final class Page<T> implements Predicate<T> {
+        private long skip;
+        private final int limit;
+        private final Consumer<T> action;
+        private int taken = 0;
+        private boolean full = false;
+        private T last;
+
+        Page(long skip, int limit, Consumer<T> action) {
+            this.skip = skip;
+            this.limit = limit;
+            this.action = action;
+        }
+
+        @Override
+        public boolean test(T row) {
+            if (skip > 0) {
+                skip--;
+            } else if (limit > 0 && taken == limit) {
+                full = true;
+                return false;
+            } else {
+                action.accept(row);
+                taken++;
+            }
+            last = row;
+            return true;
+        }
+    }
+
+    public interface IoTask {
+        void run() throws IOException;
+    }
+
+    // Runs task with every operation held off, for saves that must not
+    // interleave with changes (see LibrarySystem's checkpoints)
+    public void runExclusive(IoTask task) throws IOException {
+        lock.writeLock().lock();
+        try {
+            task.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Needs no service lock: segments are immutable and the repository hands
+    // out a consistent snapshot of its rows on its own
+    private void streamHistory(IoTask cold, Runnable hot) {
+        awaitHistory();
+        try {
+            if (archive != null) cold.run();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        hot.run();
+    }
+
+    private void awaitHistory() {
+        if (history == null) return;
+        try {
+            DataFileLoader.await(history);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Every change is logged before it is reported done; an operation whose
+    // record cannot be written undoes its change and fails
+    private void logChange(String... fields) throws IOException {
+        if (log != null) log.append(fields);
+    }
+
+    private static OperationResult notLogged(IOException e) {
+        System.err.println("Error writing to the change log: " + e.getMessage());
+        return OperationResult.fail("The change could not be saved; nothing was changed.");
+    }
+
+    private <T> T shared(Supplier<T> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private <T> T exclusive(Supplier<T> action) {
+        lock.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package library;
+
+public class LibraryStats implements LibraryStatsMBean {
+    private final BookRepository books;
+    private final UserRepository users;
+    private final TransactionRepository transactions;
+    private final TransactionArchive archive;
+
+    public LibraryStats(BookRepository books, UserRepository users, TransactionRepository transactions,
+                        TransactionArchive archive) {
+        this.books = books;
+        this.users = users;
+        this.transactions = transactions;
+        this.archive = archive;
+    }
+
+    @Override
+    public long getBooks() {
+        return books.size();
+    }
+
+    @Override
+    public long getUsers() {
+        return users.size();
+    }
+
+    @Override
+    public long getTransactions() {
+        return transactions.size();
+    }
+
+    @Override
+    public long getArchivedTransactions() {
+        return archive.size();
+    }
+
+    @Override
+    public long getOpenLoans() {
+        return transactions.openLoanCount();
+    }
+
+    @Override
+    public long getSearchCacheHits() {
+        return books.getSearchCache().getHits();
+    }
+
+    @Override
+    public long getSearchCacheMisses() {
+        return books.getSearchCache().getMisses();
+    }
+
+    @Override
+    public long getSearchCacheEvictions() {
+        return books.getSearchCache().getEvictions();
+    }
+}
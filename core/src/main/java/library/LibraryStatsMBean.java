@@ -0,0 +1,20 @@
+package library;
+
+// JMX view of the current collection sizes
+public interface LibraryStatsMBean {
+    long getBooks();
+
+    long getUsers();
+
+    long getTransactions();
+
+    long getArchivedTransactions();
+
+    long getOpenLoans();
+
+    long getSearchCacheHits();
+
+    long getSearchCacheMisses();
+
+    long getSearchCacheEvictions();
+}
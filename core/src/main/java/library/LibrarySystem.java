@@ -0,0 +1,1665 @@
+package library;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class LibrarySystem {
+    private static final String USERS_FILE = "users.txt";
+    private static final String BOOKS_FILE = "books.txt";
+    private static final String TRANSACTIONS_FILE = "transactions.txt";
+    private static final String HOLDS_FILE = "holds.txt";
+    private static final String HOLDS_SEQUENCE_FILE = "holds.seq";
+    // Who has which book out (user ID, book ID per line) as of the last save
+    private static final String OPEN_LOANS_FILE = "loans.txt";
+    private static final String WAL_FILE = "library.wal";
+    private static final String SEQUENCE_FILE = "transactions.seq";
+    private static final String SNAPSHOT_FILE = "library.snapshot";
+    private static final String ARCHIVE_DIR = "archive";
+    private static final String CATALOGUE_DIR = "catalogue";
+    private static final String METRICS_FILE = "library.metrics";
+    // Seconds between metrics snapshots written to METRICS_FILE; 0 turns them off
+    private static final long METRICS_INTERVAL = Long.getLong("library.metricsInterval", 60);
+    // Minutes between sweeps for lapsed holds (one also runs at start-up)
+    private static final long HOLD_SWEEP_MINUTES = Long.getLong("library.holdSweepMinutes", 60);
+    // Minutes between checkpoints, which save and empty the change log so it
+    // (and the replay after a crash) stays short; 0 only saves at exit
+    private static final long CHECKPOINT_MINUTES = Long.getLong("library.checkpointMinutes", 10);
+    private static final int DEFAULT_PORT = 5050;
+    // Rows per page in the console listings
+    private static final int PAGE_SIZE = Integer.getInteger("library.pageSize", 50);
+    private static final int SUGGESTIONS = 10;
+    // Rows in the most borrowed books and most active users reports
+    private static final int TOP_COUNT = 10;
+    // Closed loans returned more than this many days ago move to the archive on save,
+    // once there are at least ARCHIVE_MIN_ROWS of them (so segments are not tiny)
+    private static final int ARCHIVE_AFTER_DAYS = Integer.getInteger("library.archiveAfterDays", 365);
+    private static final int ARCHIVE_MIN_ROWS = Integer.getInteger("library.archiveMinRows", 1000);
+
+    private BookRepository books = new BookRepository();
+    private UserRepository users = new UserRepository();
+    private TransactionRepository transactions = new TransactionRepository();
+    private HoldRepository holds = new HoldRepository();
+    private TransactionIdAllocator transactionIds = new TransactionIdAllocator();
+    // Every data file lives here: -Dlibrary.dataDir, or the working directory
+    private final Path dataDir;
+    private final TransactionArchive archive;
+    private DataFileLoader loader = new DataFileLoader();
+    // -Dlibrary.format=binary makes saveAllFiles write library.snapshot instead of the text files
+    private boolean binarySnapshots = "binary".equalsIgnoreCase(System.getProperty("library.format", "csv"));
+    // Set when the text files may not match memory (e.g. after loading a snapshot),
+    // so the next text save rewrites all of them instead of only what changed
+    private boolean textFilesStale = false;
+    // Set when the text files are sharded (shards/manifest exists); see --reshard
+    private ShardedLayout layout = null;
+    // Set when the catalogue is kept in catalogue/ instead of the books files; see --move-catalogue
+    private StoredBookRepository storedBooks = null;
+    private User loggedInUser = null;
+    private WriteAheadLog log = null;
+    private LibraryService service = null;
+    private final LibraryMetrics metrics = new LibraryMetrics();
+    private final CirculationStats circulation = new CirculationStats();
+    // Runs the hold sweeps and checkpoints
+    private ScheduledExecutorService maintenance = null;
+    // Completes once the transaction history is loaded and the log's changes
+    // to it are applied (and, in a session, circulation is counted); see startLoading
+    private CompletableFuture<Void> history = CompletableFuture.completedFuture(null);
+
+    private Scanner scanner = new Scanner(System.in);
+
+    public LibrarySystem() {
+        this(Paths.get(System.getProperty("library.dataDir", ".")));
+    }
+
+    public LibrarySystem(Path dataDir) {
+        this.dataDir = dataDir;
+        this.archive = new TransactionArchive(dataDir.resolve(ARCHIVE_DIR));
+    }
+
+    public static void main(String[] args) {
+        LibrarySystem app = new LibrarySystem();
+        if (args.length == 2 && args[0].equals("--convert")) {
+            app.convert(args[1]);
+            return;
+        }
+        if (args.length == 2 && args[0].equals("--reshard")) {
+            app.reshard(Integer.parseInt(args[1]));
+            return;
+        }
+        if (args.length == 2 && args[0].equals("--move-catalogue")) {
+            app.moveCatalogue(args[1]);
+            return;
+        }
+        if (args.length == 1 && args[0].equals("--migrate-passwords")) {
+            app.migratePasswords();
+            return;
+        }
+        if (args.length >= 2 && args[0].equals("--list")) {
+            app.list(args);
+            return;
+        }
+        if (args.length >= 2 && args[0].equals("--batch")) {
+            app.batch(args);
+            return;
+        }
+        if (args.length >= 1 && args[0].equals("--load")) {
+            app.generateLoad(args);
+            return;
+        }
+        if (args.length >= 1 && args[0].equals("--serve")) {
+            app.serve(args.length >= 2 ? Integer.parseInt(args[1]) : DEFAULT_PORT);
+            return;
+        }
+        app.run();
+    }
+
+    // Headless mode: many concurrent sessions over a local socket, saved on shutdown
+    private void serve(int port) {
+        if (!startUp()) return;
+        LibraryServer server = new LibraryServer(service, port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            shutDown(true);
+        }));
+        try {
+            server.serve();
+        } catch (IOException e) {
+            System.err.println("Service stopped: " + e.getMessage());
+        }
+    }
+
+    // Rewrites the data in the given format ("csv" or "binary") and exits
+    private void convert(String format) {
+        if (!format.equals("csv") && !format.equals("binary")) {
+            System.err.println("Unknown format: " + format + " (expected csv or binary)");
+            return;
+        }
+        try {
+            loadAllFiles();
+            binarySnapshots = format.equals("binary");
+            saveAllFiles();
+            Files.deleteIfExists(file(WAL_FILE));
+            System.out.println("Converted " + users.size() + " users, " + books.size() + " books and "
+                    + transactions.size() + " transactions to " + format + ".");
+        } catch (IOException e) {
+            System.err.println("Conversion failed: " + e.getMessage());
+        }
+    }
+
+    // Rewrites the text files as N hash shards per file type (1 = the single
+    // files) and removes the old layout's files
+    private void reshard(int shards) {
+        if (shards < 1) {
+            System.err.println("The shard count must be at least 1.");
+            return;
+        }
+        try {
+            loadAllFiles();
+            ShardedLayout old = layout;
+            layout = shards > 1 ? ShardedLayout.create(dataDir, shards) : null;
+            binarySnapshots = false;
+            textFilesStale = true;
+            saveAllFiles();
+            if (old != null && layout == null) old.delete();
+            if (old == null && layout != null) {
+                for (String name : new String[]{USERS_FILE, BOOKS_FILE, TRANSACTIONS_FILE}) {
+                    Files.deleteIfExists(file(name));
+                }
+            }
+            Files.deleteIfExists(file(WAL_FILE));
+            System.out.println(layout == null ? "Data is now in the single text files."
+                    : "Data is now in " + shards + " shards per file type under " + ShardedLayout.DIR + "/.");
+        } catch (IOException e) {
+            System.err.println("Resharding failed: " + e.getMessage());
+        }
+    }
+
+    // Moves the catalogue into the on-disk store under catalogue/ ("store"),
+    // for catalogues too large for the heap, or back into the books files
+    // ("memory"). The store is filled under a temporary name and renamed, so
+    // an interrupted move leaves the books files in charge.
+    private void moveCatalogue(String target) {
+        if (!target.equals("store") && !target.equals("memory")) {
+            System.err.println("Unknown target: " + target + " (expected store or memory)");
+            return;
+        }
+        try {
+            loadAllFiles();
+            if ((storedBooks != null) == target.equals("store")) {
+                System.out.println("The catalogue is already " + (storedBooks != null ? "in " + CATALOGUE_DIR + "/."
+                        : "in memory."));
+                return;
+            }
+            Path dir = dataDir.resolve(CATALOGUE_DIR);
+            if (target.equals("store")) {
+                Path tmp = dataDir.resolve(CATALOGUE_DIR + ".tmp");
+                LsmStorageEngine.delete(tmp);
+                try (LsmStorageEngine store = LsmStorageEngine.open(tmp)) {
+                    for (Book b : books.findAll()) {
+                        store.put(b.getBookId(), b.toRecord());
+                    }
+                }
+                // Without a MANIFEST a directory there is only a leftover
+                LsmStorageEngine.delete(dir);
+                Files.move(tmp, dir, StandardCopyOption.ATOMIC_MOVE);
+                AtomicFiles.syncDirectory(dataDir.toAbsolutePath());
+                openCatalogue();
+            } else {
+                BookRepository inMemory = new BookRepository();
+                for (Book b : books.findAll()) {
+                    inMemory.add(b);
+                }
+                closeCatalogue();
+                books = inMemory;
+            }
+            // Rewrite everything in the new shape before the old copy goes
+            textFilesStale = true;
+            Files.deleteIfExists(file(SNAPSHOT_FILE));
+            saveAllFiles();
+            if (storedBooks != null) {
+                Files.deleteIfExists(file(BOOKS_FILE));
+            } else {
+                LsmStorageEngine.delete(dir);
+            }
+            Files.deleteIfExists(file(WAL_FILE));
+            System.out.println("Moved " + books.size() + " books " + (storedBooks != null ? "to " + CATALOGUE_DIR + "/."
+                    : "back into memory."));
+        } catch (IOException e) {
+            System.err.println("Moving the catalogue failed: " + e.getMessage());
+        } finally {
+            closeCatalogue();
+        }
+    }
+
+    // Replaces every plaintext password in users.txt with its hash and exits.
+    // PBKDF2 is deliberately slow, so the users are hashed in parallel.
+    private void migratePasswords() {
+        try {
+            loadAllFiles();
+            List<User> legacy = users.findAll().stream()
+                    .filter(u -> !PasswordHasher.isHash(u.getPasswordHash()))
+                    .toList();
+            legacy.parallelStream().forEach(u -> u.setPasswordHash(PasswordHasher.hash(u.getPasswordHash())));
+            saveAllFiles();
+            Files.deleteIfExists(file(WAL_FILE));
+            System.out.println("Hashed the passwords of " + legacy.size() + " of " + users.size() + " users.");
+        } catch (IOException e) {
+            System.err.println("Migration failed: " + e.getMessage());
+        }
+    }
+
+    // Writes one page of books or transactions (everything without --size) to
+    // stdout for scripts; the token for the next page, if any, goes to stderr
+    private void list(String[] args) {
+        String what = args[1];
+        ListingWriter.Format format = ListingWriter.Format.TEXT;
+        int size = 0;
+        long page = 1;
+        String after = null;
+        try {
+            for (int i = 2; i < args.length; i++) {
+                String value = i + 1 < args.length ? args[i + 1] : "";
+                switch (args[i]) {
+                    case "--format": format = ListingWriter.Format.parse(value); i++; break;
+                    case "--size": size = Integer.parseInt(value); i++; break;
+                    case "--page": page = Long.parseLong(value); i++; break;
+                    case "--after": after = value; i++; break;
+                    default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            if (!what.equals("books") && !what.equals("transactions")) {
+                throw new IllegalArgumentException("Nothing to list: " + what + " (expected books or transactions)");
+            }
+            if (page < 1 || (page > 1 && size <= 0)) {
+                throw new IllegalArgumentException("--page needs --size and starts at 1");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: --list books|transactions [--format text|csv|jsonl] [--size N] [--page N] [--after TOKEN]");
+            return;
+        }
+        try {
+            loadAllFiles();
+        } catch (IOException e) {
+            System.err.println("IO error while loading files: " + e.getMessage());
+            return;
+        }
+        LibraryService reader = new LibraryService(books, users, transactions, holds, transactionIds, archive, null, metrics,
+                null, null);
+        ListingWriter out = new ListingWriter(System.out, format);
+        long skip = (page - 1) * size;
+        try {
+            String next = what.equals("books")
+                    ? reader.listBooks(after, skip, size, out::book)
+                    : reader.listTransactions(after, skip, size, out::transaction);
+            out.flush();
+            if (next != null) System.err.println("More rows follow: --after " + next);
+        } catch (IllegalArgumentException | IllegalStateException | UncheckedIOException e) {
+            out.flush();
+            System.err.println("Listing failed: " + e.getMessage());
+        } finally {
+            metrics.close();
+        }
+    }
+
+    // Executes a command file (see BatchRunner) through the same service as the
+    // console, logging and saving its changes like an interactive session
+    private void batch(String[] args) {
+        Path commands = Paths.get(args[1]);
+        int threads = 1;
+        Path output = null;
+        try {
+            for (int i = 2; i < args.length; i++) {
+                String value = i + 1 < args.length ? args[i + 1] : "";
+                switch (args[i]) {
+                    case "--threads": threads = Integer.parseInt(value); i++; break;
+                    case "--output": output = Paths.get(value); i++; break;
+                    default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: --batch <file> [--threads N] [--output FILE]");
+            return;
+        }
+        if (!startUp()) return;
+        try (Writer results = output != null ? Files.newBufferedWriter(output, StandardCharsets.UTF_8) : null) {
+            System.out.print(new BatchRunner(service, threads).run(commands, results));
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Batch failed: " + e.getMessage());
+        } finally {
+            shutDown(true);
+        }
+    }
+
+    // Runs synthetic traffic (see LoadGenerator) against the loaded data and
+    // prints throughput and latency percentiles. Nothing is logged or saved.
+    private void generateLoad(String[] args) {
+        int threads = 4;
+        long seconds = 10;
+        double rate = 0;
+        Map<LoadGenerator.Op, Integer> mix = LoadGenerator.parseMix("borrow=20,return=20,search=60");
+        long seed = 1;
+        try {
+            for (int i = 1; i < args.length; i++) {
+                String value = i + 1 < args.length ? args[i + 1] : "";
+                switch (args[i]) {
+                    case "--threads": threads = Integer.parseInt(value); i++; break;
+                    case "--duration": seconds = Long.parseLong(value); i++; break;
+                    case "--rate": rate = Double.parseDouble(value); i++; break;
+                    case "--mix": mix = LoadGenerator.parseMix(value); i++; break;
+                    case "--seed": seed = Long.parseLong(value); i++; break;
+                    default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: --load [--threads N] [--duration SECONDS] [--rate OPS_PER_SECOND]"
+                    + " [--mix borrow=20,return=20,search=60] [--seed N]");
+            return;
+        }
+        try {
+            loadAllFiles();
+        } catch (IOException e) {
+            System.err.println("IO error while loading files: " + e.getMessage());
+            return;
+        }
+        LibraryService scratch = new LibraryService(books, users, transactions, holds, transactionIds, archive, null, metrics,
+                null, null);
+        try {
+            System.out.print(new LoadGenerator(scratch, threads, seconds, rate, mix, seed).run());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            metrics.close();
+        }
+    }
+
+    public void run() {
+        System.out.println("Welcome to the Library Management System");
+        System.out.println("----------------------------------------");
+
+        if (!startUp()) return;
+
+        boolean loggedIn = login();
+        if (loggedIn) {
+            // Demonstrate polymorphism
+            Person p = loggedInUser; // Person reference to a User object
+            System.out.print("Polymorphism demo - using Person reference: ");
+            p.displayInfo();
+
+            displayMenu();
+        } else {
+            System.out.println("Exceeded login attempts. Exiting.");
+        }
+        shutDown(loggedIn);
+    }
+
+    // Loads the data, opens the change log and builds the service on top of
+    // them; the transaction history may still be loading when it returns
+    boolean startUp() {
+        try {
+            startLoading();
+        } catch (FileNotFoundException fnfe) {
+            System.out.println("One or more data files are missing. Creating default files...");
+            createDefaultFiles();
+            try {
+                loadAllFiles();
+            } catch (Exception e) {
+                System.err.println("Failed to load files after creating defaults: " + e.getMessage());
+                return false;
+            }
+        } catch (IOException ioe) {
+            System.err.println("IO error while loading files: " + ioe.getMessage());
+            return false;
+        }
+
+        long plaintext = users.findAll().stream().filter(u -> !PasswordHasher.isHash(u.getPasswordHash())).count();
+        if (plaintext > 0) {
+            System.err.println(plaintext + " user(s) still have plaintext passwords; they are hashed at their next"
+                    + " login, or all at once with --migrate-passwords.");
+        }
+
+        try {
+            log = new WriteAheadLog(file(WAL_FILE));
+        } catch (IOException ioe) {
+            System.err.println("Could not open " + WAL_FILE + ": " + ioe.getMessage());
+            return false;
+        }
+        // Circulation is counted from the history, so it waits for it too
+        history = history.thenRun(this::rebuildCirculation);
+        if (history.isDone()) {
+            try {
+                DataFileLoader.await(history);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("IO error while reading the history: " + e.getMessage());
+                return false;
+            }
+        } else {
+            history.whenComplete((done, e) -> {
+                if (e != null) System.err.println("Could not load the transaction history: " + e.getMessage());
+            });
+        }
+        service = new LibraryService(books, users, transactions, holds, transactionIds, archive, log, metrics,
+                circulation, history);
+        metrics.setSizes(new LibraryStats(books, users, transactions, archive));
+        metrics.registerMBeans();
+        metrics.startSnapshots(file(METRICS_FILE), METRICS_INTERVAL);
+        startMaintenance();
+        return true;
+    }
+
+    private void rebuildCirculation() {
+        try {
+            circulation.rebuild(transactions.table(), archive);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        circulation.forEachBook(books.getCompletions()::setLoans);
+    }
+
+    private void startMaintenance() {
+        sweepHolds();
+        if (HOLD_SWEEP_MINUTES <= 0 && CHECKPOINT_MINUTES <= 0) return;
+        maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "library-maintenance");
+            t.setDaemon(true);
+            return t;
+        });
+        if (HOLD_SWEEP_MINUTES > 0) {
+            maintenance.scheduleWithFixedDelay(this::sweepHolds, HOLD_SWEEP_MINUTES, HOLD_SWEEP_MINUTES, TimeUnit.MINUTES);
+        }
+        if (CHECKPOINT_MINUTES > 0) {
+            maintenance.scheduleWithFixedDelay(this::checkpoint, CHECKPOINT_MINUTES, CHECKPOINT_MINUTES, TimeUnit.MINUTES);
+        }
+    }
+
+    // Saves with every operation held off, then empties the log, whose
+    // changes are all in the files now. Skipped while the history is still
+    // loading: saving without it would drop it from the files.
+    void checkpoint() {
+        if (!history.isDone() || history.isCompletedExceptionally()) return;
+        try {
+            service.runExclusive(() -> {
+                saveAllFiles();
+                log.truncate();
+            });
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Checkpoint failed: " + e.getMessage());
+        }
+    }
+
+    private void sweepHolds() {
+        try {
+            int lapsed = service.sweepHolds(LocalDate.now());
+            if (lapsed > 0) System.out.println(lapsed + " hold(s) lapsed.");
+        } catch (RuntimeException e) {
+            System.err.println("Error sweeping holds: " + e.getMessage());
+        }
+    }
+
+    void shutDown(boolean save) {
+        // Not interrupted: a checkpoint must not be cut off while it writes the log
+        if (maintenance != null) {
+            maintenance.shutdown();
+            try {
+                maintenance.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            if (save) {
+                // Saving without the history would drop it from the files
+                DataFileLoader.await(history);
+                saveAllFiles();
+                // Everything in the log is now part of the data files
+                log.truncate();
+                System.out.println("All changes saved. Goodbye!");
+            }
+        } catch (IOException e) {
+            System.err.println("Error saving files: " + e.getMessage());
+        } finally {
+            try {
+                log.close();
+            } catch (IOException e) {
+                System.err.println("Error closing " + WAL_FILE + ": " + e.getMessage());
+            }
+            metrics.close();
+            closeCatalogue();
+        }
+    }
+
+    void loadAllFiles() throws IOException {
+        startLoading();
+        DataFileLoader.await(history);
+    }
+
+    // Loads users, books and holds, and who has what out from OPEN_LOANS_FILE,
+    // which is all a session needs to start. The transaction history, which
+    // only grows, then loads on a background thread and completes `history`.
+    // Without the open loans file, or from a snapshot, everything loads here.
+    private void startLoading() throws IOException {
+        long start = metrics.start();
+        boolean ok = false;
+        try {
+            archive.open();
+            layout = ShardedLayout.open(dataDir);
+            if (storedBooks == null) openCatalogue();
+            // A snapshot holds everything in one file, so it loads in one go
+            boolean snapshot = loadSnapshot();
+            boolean lazy = !snapshot && Files.exists(file(OPEN_LOANS_FILE));
+            CompletableFuture<List<TransactionTable>> rows = snapshot ? null : loadTextFiles(lazy);
+            loadHolds();
+            if (lazy) {
+                restoreOpenLoans();
+            } else {
+                if (rows != null) loadTransactions(DataFileLoader.await(rows));
+                dropArchivedRows();
+                restoreBorrowedBooks();
+            }
+            List<String[]> historyRecords = new ArrayList<>();
+            replayLog(historyRecords);
+            if (lazy) {
+                history = CompletableFuture.runAsync(() -> loadHistory(rows, historyRecords), r -> {
+                    Thread t = new Thread(r, "history-loader");
+                    t.setDaemon(true);
+                    t.start();
+                });
+            } else {
+                applyHistoryRecords(historyRecords);
+                history = CompletableFuture.completedFuture(null);
+            }
+            ok = true;
+        } finally {
+            metrics.record(LibraryMetrics.Operation.LOAD, start, ok);
+        }
+    }
+
+    private void loadHistory(CompletableFuture<List<TransactionTable>> rows, List<String[]> historyRecords) {
+        long start = metrics.start();
+        boolean ok = false;
+        try {
+            loadTransactions(DataFileLoader.await(rows));
+            dropArchivedRows();
+            applyHistoryRecords(historyRecords);
+            ok = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            metrics.record(LibraryMetrics.Operation.HISTORY, start, ok);
+        }
+    }
+
+    private void openCatalogue() throws IOException {
+        Path dir = dataDir.resolve(CATALOGUE_DIR);
+        if (!LsmStorageEngine.exists(dir)) return;
+        storedBooks = new StoredBookRepository(LsmStorageEngine.open(dir));
+        books = storedBooks;
+    }
+
+    private void closeCatalogue() {
+        if (storedBooks == null) return;
+        try {
+            storedBooks.getStore().close();
+        } catch (IOException e) {
+            System.err.println("Error closing " + CATALOGUE_DIR + "/: " + e.getMessage());
+        }
+        storedBooks = null;
+    }
+
+    private boolean loadSnapshot() {
+        Path path = file(SNAPSHOT_FILE);
+        if (!Files.exists(path)) return false;
+        try {
+            SnapshotFile.Snapshot snap = SnapshotFile.read(path);
+            if (snap.skippedTransactions > 0) {
+                System.err.println("Skipping " + snap.skippedTransactions + " transaction(s) without a borrow date in "
+                        + SNAPSHOT_FILE);
+            }
+            loadUsers(snap.users);
+            loadBooks(snap.books);
+            loadTransactions(List.of(snap.transactions));
+            transactionIds.observe(snap.lastTransactionId);
+            textFilesStale = true;
+            return true;
+        } catch (IOException e) {
+            System.err.println("Ignoring " + SNAPSHOT_FILE + " (" + e.getMessage() + "), loading text files instead.");
+            return false;
+        }
+    }
+
+    // Returns with users and books loaded and the transactions still being
+    // read. With historyLater the transactions are only started after users
+    // and books, so they do not compete for the CPU with what a session needs.
+    private CompletableFuture<List<TransactionTable>> loadTextFiles(boolean historyLater) throws IOException {
+        if (layout != null) {
+            ShardedLayout.Contents shards = layout.load(loader, this::parseUser,
+                    storedBooks == null ? this::parseBook : null, this::parseTransaction, historyLater);
+            loadUsers(shards.users);
+            loadBooks(shards.books);
+            return shards.transactions;
+        }
+        for (String name : new String[]{USERS_FILE, BOOKS_FILE, TRANSACTIONS_FILE}) {
+            if (name.equals(BOOKS_FILE) && storedBooks != null) continue;
+            if (!Files.exists(file(name))) throw new FileNotFoundException(name + " not found");
+        }
+        // The three files are independent, so they are read and parsed concurrently
+        CompletableFuture<List<User>> userRows = loader.readAsync(file(USERS_FILE), this::parseUser);
+        CompletableFuture<List<Book>> bookRows = storedBooks == null
+                ? loader.readAsync(file(BOOKS_FILE), this::parseBook)
+                : CompletableFuture.completedFuture(List.of());
+        // Transactions are parsed straight into one columnar table per chunk
+        CompletableFuture<List<TransactionTable>> transactionRows = historyLater ? null
+                : loader.readChunksAsync(file(TRANSACTIONS_FILE), TransactionTable::new, this::parseTransaction);
+        loadUsers(DataFileLoader.await(userRows));
+        loadBooks(DataFileLoader.await(bookRows));
+        if (historyLater) {
+            transactionRows = loader.readChunksAsync(file(TRANSACTIONS_FILE), TransactionTable::new,
+                    this::parseTransaction);
+        }
+        return transactionRows;
+    }
+
+    // Holds are kept in holds.txt whatever the format; no file means no holds
+    private void loadHolds() throws IOException {
+        holds.clear();
+        Path path = file(HOLDS_FILE);
+        if (Files.exists(path)) {
+            for (Hold h : loader.read(path, this::parseHold)) {
+                holds.put(h);
+            }
+        }
+        holds.loadSequence(file(HOLDS_SEQUENCE_FILE));
+        holds.markClean();
+    }
+
+    // Records that also change the transaction history are added to
+    // historyRecords; applyHistoryRecord applies that part once it is loaded
+    private void replayLog(List<String[]> historyRecords) throws IOException {
+        List<String[]> records = WriteAheadLog.readRecords(file(WAL_FILE));
+        Set<String> moved = new HashSet<>();
+        for (String[] r : records) {
+            String bookId = applyLogRecord(r);
+            if (bookId != null) moved.add(bookId);
+            if (r[0].equals("BORROW") || r[0].equals("RETURN")) historyRecords.add(r);
+        }
+        recountCopies(moved);
+        if (!records.isEmpty()) {
+            System.out.println("Recovered " + records.size() + " unsaved change(s) from " + WAL_FILE + ".");
+        }
+    }
+
+    // Returns the book whose copy count the record moved, if any
+    private String applyLogRecord(String[] r) {
+        switch (r[0]) {
+            case "BORROW": {
+                // Format: BORROW,T004,U001,B002,2025-10-20
+                if (r.length < 5) return null;
+                // A copy set aside by a hold was taken off the shelf when the hold became ready
+                Book b = findBookById(r[3]);
+                if (holds.takeReady(r[2], r[3]) == null && b != null) b.tryCheckout();
+                User u = findUserById(r[2]);
+                if (u != null && !u.getBorrowedBooks().contains(r[3])) u.borrowBook(r[3]);
+                return r[3];
+            }
+            case "RETURN": {
+                // Format: RETURN,T004,U001,B002,2025-10-21
+                if (r.length < 5) return null;
+                Book b = findBookById(r[3]);
+                if (b != null) b.checkin();
+                User u = findUserById(r[2]);
+                if (u != null) u.returnBook(r[3]);
+                return r[3];
+            }
+            case "PUT_BOOK": {
+                // Format: PUT_BOOK,B005,Title,Author,true  (inventory field as in books.txt)
+                if (r.length < 5) return null;
+                books.update(Book.fromRecord(r[1], r[2], r[3], r[4]));
+                break;
+            }
+            case "DELETE_BOOK":
+                books.remove(r[1]);
+                break;
+            case "PUT_USER": {
+                // Format: PUT_USER,U003,Name,passwordHash,user
+                if (r.length < 5) return null;
+                User u = findUserById(r[1]);
+                if (u == null) {
+                    users.add(new User(r[1], r[2], r[3], r[4]));
+                } else {
+                    u.setName(r[2]);
+                    u.setPasswordHash(r[3]);
+                    u.setRole(r[4]);
+                    users.update(u);
+                }
+                break;
+            }
+            case "DELETE_USER":
+                users.remove(r[1]);
+                break;
+            case "PUT_HOLD": {
+                // Format: PUT_HOLD,H12,U001,B002,0,2025-10-14,READY,2025-10-17  (fields as in holds.txt)
+                if (r.length < 8) return null;
+                Hold h = Hold.fromRecord(Arrays.copyOfRange(r, 1, r.length));
+                Hold old = holds.put(h);
+                Book b = findBookById(h.getBookId());
+                if (h.isReady() && (old == null || !old.isReady()) && b != null) b.tryCheckout();
+                return h.getBookId();
+            }
+            case "DELETE_HOLD": {
+                Hold h = holds.remove(r[1]);
+                Book b = h != null ? findBookById(h.getBookId()) : null;
+                if (h != null && h.isReady() && b != null) b.checkin();
+                return h != null ? h.getBookId() : null;
+            }
+            default:
+                System.err.println("Skipping unknown log record: " + r[0]);
+        }
+        return null;
+    }
+
+    // Copy counts are replayed as steps, so a record the saved files already
+    // include (a crash after a save but before the log was cleared) would move
+    // a count twice. Who has what out and the holds are replayed as absolute
+    // state, so the counts of the books involved are taken from those instead.
+    private void recountCopies(Set<String> bookIds) {
+        if (bookIds.isEmpty()) return;
+        Map<String, Integer> out = new HashMap<>();
+        for (User u : users.findAll()) {
+            for (String bookId : u.getBorrowedBooks()) {
+                if (bookIds.contains(bookId)) out.merge(bookId, 1, Integer::sum);
+            }
+        }
+        for (String bookId : bookIds) {
+            Book b = findBookById(bookId);
+            if (b == null) continue;
+            int ready = (int) holds.findByBook(bookId).stream().filter(Hold::isReady).count();
+            b.setCheckedOutCopies(out.getOrDefault(bookId, 0) + ready);
+        }
+    }
+
+    // The transaction side of the BORROW and RETURN records (applyLogRecord
+    // does the rest). IDs only grow and the loaded counter covers every row
+    // in the files, so a BORROW whose ID is not above it is already in the
+    // history; a RETURN only closes the loan it names while that is still open.
+    private void applyHistoryRecords(List<String[]> records) {
+        long saved = transactionIds.current();
+        for (String[] r : records) applyHistoryRecord(r, saved);
+    }
+
+    private void applyHistoryRecord(String[] r, long saved) {
+        if (r.length < 5) return;
+        if (r[0].equals("BORROW")) {
+            long n = TransactionIdAllocator.parse(r[1]);
+            if (n >= 0 ? n <= saved : transactions.findOpenLoan(r[2], r[3]) != null) return;
+            transactions.add(r[1], r[2], r[3], LocalDate.parse(r[4]), null);
+            transactionIds.observe(r[1]);
+        } else {
+            Transaction t = transactions.findOpenLoan(r[2], r[3]);
+            if (t != null && t.getTransactionId().equals(r[1])) {
+                transactions.markReturned(t, LocalDate.parse(r[4]));
+            }
+        }
+    }
+
+    private User parseUser(String[] parts) {
+        // Format: U001,John Doe,pbkdf2$...,user (plaintext in files from before hashing)
+        if (parts.length < 4) return null;
+        return new User(parts[0], parts[1], parts[2], parts[3]);
+    }
+
+    private Book parseBook(String[] parts) {
+        // Format: B001,The Great Gatsby,F. Scott Fitzgerald,true  or  B005,Dune,Frank Herbert,3/5
+        if (parts.length < 4) return null;
+        return Book.fromRecord(parts[0], parts[1], parts[2], parts[3]);
+    }
+
+    private Hold parseHold(String[] parts) {
+        // Format: H12,U001,B002,0,2025-10-14,WAITING,2025-11-13
+        if (parts.length < 7) return null;
+        try {
+            return Hold.fromRecord(parts);
+        } catch (RuntimeException e) {
+            System.err.println("Skipping unreadable hold " + parts[0] + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void parseTransaction(TransactionTable chunk, String[] parts) {
+        // Format: T001,U001,B002,2025-10-14,null
+        if (parts.length < 5) return;
+        try {
+            chunk.addRecord(parts);
+        } catch (DateTimeParseException e) {
+            // e.g. a row cut short by a crash during an append; the change log still has it
+            System.err.println("Skipping unreadable transaction " + parts[0] + ": " + e.getMessage());
+        }
+    }
+
+    private void loadUsers(List<User> loaded) {
+        users.clear();
+        for (User u : loaded) {
+            users.add(u);
+        }
+        users.markClean();
+    }
+
+    private void loadBooks(List<Book> loaded) {
+        books.clear();
+        // The stored catalogue is read on demand
+        if (storedBooks != null) return;
+        for (Book b : loaded) {
+            books.add(b);
+        }
+        books.markClean();
+    }
+
+    private void loadTransactions(List<TransactionTable> loaded) throws IOException {
+        transactions.clear();
+        transactionIds.reset();
+        transactionIds.load(file(SEQUENCE_FILE));
+        for (TransactionTable chunk : loaded) {
+            transactions.addAll(chunk);
+            for (int i = 0; i < chunk.size(); i++) {
+                transactionIds.observe(chunk.transactionNumber(i));
+            }
+        }
+        transactions.markSaved();
+    }
+
+    // A crash between writing a segment and rewriting the hot files leaves the
+    // same rows in both tiers; the archived copy wins.
+    private void dropArchivedRows() throws IOException {
+        transactionIds.observe(archive.getMaxTransactionNumber());
+        List<Transaction> closed = transactions.findReturnedBefore(LocalDate.now().plusDays(1));
+        Set<String> archived = archive.findArchived(closed);
+        if (archived.isEmpty()) return;
+        closed.removeIf(t -> !archived.contains(t.getTransactionId()));
+        transactions.removeAll(closed);
+        textFilesStale = true;
+    }
+
+    // Moves old closed loans out of memory into a new archive segment
+    private void archiveOldTransactions() throws IOException {
+        List<Transaction> old = transactions.findReturnedBefore(LocalDate.now().minusDays(ARCHIVE_AFTER_DAYS));
+        if (old.isEmpty() || old.size() < ARCHIVE_MIN_ROWS) return;
+        archive.append(old);
+        transactions.removeAll(old);
+        System.out.println("Archived " + old.size() + " old transaction(s).");
+    }
+
+    // Fills each user's borrowedBooks list from OPEN_LOANS_FILE, without the history
+    private void restoreOpenLoans() throws IOException {
+        for (String[] loan : loader.read(file(OPEN_LOANS_FILE), parts -> parts.length < 2 ? null : parts)) {
+            User u = findUserById(loan[0]);
+            if (u != null && !u.getBorrowedBooks().contains(loan[1])) u.borrowBook(loan[1]);
+        }
+    }
+
+    // Build each user's borrowedBooks list from the open loans in one pass
+    private void restoreBorrowedBooks() {
+        for (Transaction t : transactions.findOpenLoans()) {
+            User u = findUserById(t.getUserId());
+            if (u != null && !u.getBorrowedBooks().contains(t.getBookId())) {
+                u.borrowBook(t.getBookId());
+            }
+        }
+    }
+
+    // Only files with changes are written; each rewrite goes through a temp file
+    // that is fsynced and renamed into place.
+    void saveAllFiles() throws IOException {
+        long start = metrics.start();
+        boolean ok = false;
+        try {
+            archiveOldTransactions();
+            if (storedBooks != null) storedBooks.writeBack();
+            // Books in the store are saved by writeBack and left out of the files
+            BookRepository bookFiles = storedBooks == null ? books : null;
+            if (binarySnapshots) {
+                if (!Files.exists(file(SNAPSHOT_FILE)) || users.hasChanges()
+                        || (bookFiles != null && bookFiles.hasChanges()) || transactions.hasChanges()) {
+                    SnapshotFile.write(file(SNAPSHOT_FILE), users.findAll(),
+                            bookFiles != null ? bookFiles.findAll() : List.of(),
+                            transactions.findAll(), transactionIds.current());
+                }
+            } else if (layout != null) {
+                layout.save(users, LibrarySystem::userRecord, bookFiles, Book::toRecord, transactions,
+                        textFilesStale);
+                Files.deleteIfExists(file(SNAPSHOT_FILE));
+            } else {
+                if (textFilesStale || users.hasChanges()) saveUsers();
+                if (bookFiles != null && (textFilesStale || bookFiles.hasChanges())) saveBooks();
+                saveTransactions();
+                // A leftover snapshot would otherwise shadow the text files on the next start
+                Files.deleteIfExists(file(SNAPSHOT_FILE));
+            }
+            if (holds.hasChanges()) saveHolds();
+            if (textFilesStale || transactions.hasChanges() || !Files.exists(file(OPEN_LOANS_FILE))) saveOpenLoans();
+            holds.markClean();
+            users.markClean();
+            books.markClean();
+            transactions.markSaved();
+            textFilesStale = binarySnapshots;
+            transactionIds.save(file(SEQUENCE_FILE));
+            ok = true;
+        } finally {
+            metrics.record(LibraryMetrics.Operation.SAVE, start, ok);
+        }
+    }
+
+    private void saveUsers() throws IOException {
+        AtomicFiles.replace(file(USERS_FILE), bw -> {
+            for (User u : users.findAll()) {
+                bw.write(userRecord(u));
+                bw.newLine();
+            }
+        });
+    }
+
+    private static String userRecord(User u) {
+        return String.join(",", u.getId(), u.getName(), u.getPasswordHash(), u.getRole());
+    }
+
+    private void saveHolds() throws IOException {
+        AtomicFiles.replace(file(HOLDS_FILE), bw -> {
+            for (Hold h : holds.findAll()) {
+                bw.write(String.join(",", h.toRecord()));
+                bw.newLine();
+            }
+        });
+        holds.saveSequence(file(HOLDS_SEQUENCE_FILE));
+    }
+
+    private void saveOpenLoans() throws IOException {
+        AtomicFiles.replace(file(OPEN_LOANS_FILE), bw -> {
+            for (Transaction t : transactions.findOpenLoans()) {
+                bw.write(t.getUserId() + "," + t.getBookId());
+                bw.newLine();
+            }
+        });
+    }
+
+    private void saveBooks() throws IOException {
+        AtomicFiles.replace(file(BOOKS_FILE), bw -> {
+            for (Book b : books.findAll()) {
+                bw.write(b.toRecord());
+                bw.newLine();
+            }
+        });
+    }
+
+    // Existing rows only change when a loan is returned, so unless that happened
+    // to a saved row the new transactions are simply appended.
+    private void saveTransactions() throws IOException {
+        Path path = file(TRANSACTIONS_FILE);
+        if (textFilesStale || transactions.needsRewrite() || !AtomicFiles.endsWithNewline(path)) {
+            List<Transaction> all = transactions.findAll();
+            AtomicFiles.replace(path, bw -> writeTransactions(bw, all));
+        } else {
+            List<Transaction> unsaved = transactions.findUnsaved();
+            if (!unsaved.isEmpty()) AtomicFiles.append(path, bw -> writeTransactions(bw, unsaved));
+        }
+    }
+
+    private void writeTransactions(BufferedWriter bw, List<Transaction> rows) throws IOException {
+        for (Transaction t : rows) {
+            bw.write(t.toRecord());
+            bw.newLine();
+        }
+    }
+
+    private void createDefaultFiles() {
+        try {
+            List<String> defaultUsers = Arrays.asList(
+                    "U001,John Doe," + PasswordHasher.hash("pass123") + ",user",
+                    "U002,Jane Smith," + PasswordHasher.hash("abc123") + ",user",
+                    "A001,Admin," + PasswordHasher.hash("admin123") + ",admin"
+            );
+            Files.write(file(USERS_FILE), defaultUsers);
+
+            List<String> defaultBooks = Arrays.asList(
+                    "B001,The Great Gatsby,F. Scott Fitzgerald,true",
+                    "B002,To Kill a Mockingbird,Harper Lee,true",
+                    "B003,1984,George Orwell,false"
+            );
+            Files.write(file(BOOKS_FILE), defaultBooks);
+
+            List<String> defaultTrans = Arrays.asList(
+                    "T001,U001,B002,2025-10-14,null",
+                    "T002,U002,B003,2025-10-10,2025-10-13"
+            );
+            Files.write(file(TRANSACTIONS_FILE), defaultTrans);
+        } catch (IOException e) {
+            System.err.println("Error creating default files: " + e.getMessage());
+        }
+    }
+
+    private boolean login() {
+        System.out.println("Please log in to continue.");
+        int attempts = 3;
+        while (attempts > 0) {
+            System.out.print("Username: ");
+            String usernameInput = scanner.nextLine().trim();
+            System.out.print("Password: ");
+            String passwordInput = scanner.nextLine().trim();
+
+            User found = service.login(usernameInput, passwordInput);
+
+            if (found != null) {
+                loggedInUser = found;
+                System.out.println("Login successful! Welcome, " + found.getName() + ".");
+                for (Hold h : service.findHolds(found.getId())) {
+                    if (h.isReady()) {
+                        System.out.println("Book " + h.getBookId() + " is waiting for you; borrow it by " + h.getExpires() + ".");
+                    }
+                }
+                return true;
+            } else {
+                attempts--;
+                System.out.println("Invalid username or password. Try again.");
+                System.out.println("(Attempts left: " + attempts + ")");
+            }
+        }
+        return false;
+    }
+
+    private void displayMenu() {
+        while (true) {
+            System.out.println("\nMain Menu");
+            System.out.println("1. View All Books");
+            System.out.println("2. Borrow Book");
+            System.out.println("3. Return Book");
+            System.out.println("4. Search Books (by title/author)");
+            if (loggedInUser.getRole().equalsIgnoreCase("admin")) {
+                System.out.println("5. Users Management (Add/Update/Delete/Display)");
+                System.out.println("6. Catalogue Management (Add/Update/Delete/Display)");
+                System.out.println("7. Transactions (View All / By User / By Book)");
+                System.out.println("8. Metrics (Latency / Throughput / Sizes)");
+                System.out.println("9. Exit");
+            } else {
+                System.out.println("5. Holds (Place / Cancel / My Holds)");
+                System.out.println("6. Exit");
+            }
+            System.out.print("Enter choice: ");
+            String choice = scanner.nextLine().trim();
+            try {
+                if (loggedInUser.getRole().equalsIgnoreCase("admin")) {
+                    switch (choice) {
+                        case "1":
+                            viewAllBooks();
+                            break;
+                        case "2":
+                            borrowBook();
+                            break;
+                        case "3":
+                            returnBook();
+                            break;
+                        case "4":
+                            searchBooks();
+                            break;
+                        case "5":
+                            usersManagement();
+                            break;
+                        case "6":
+                            catalogueManagement();
+                            break;
+                        case "7":
+                            transactionsMenu();
+                            break;
+                        case "8":
+                            viewMetrics();
+                            break;
+                        case "9":
+                            return;
+                        default:
+                            System.out.println("Invalid choice.");
+                    }
+                } else {
+                    switch (choice) {
+                        case "1":
+                            viewAllBooks();
+                            break;
+                        case "2":
+                            borrowBook();
+                            break;
+                        case "3":
+                            returnBook();
+                            break;
+                        case "4":
+                            searchBooks();
+                            break;
+                        case "5":
+                            holdsMenu();
+                            break;
+                        case "6":
+                            return;
+                        default:
+                            System.out.println("Invalid choice.");
+                    }
+                }
+            } catch (Exception e) {
+                System.err.println("An error occurred: " + e.getMessage());
+            }
+            System.out.println("\n----------------------------------------\nReturning to main menu...");
+        }
+    }
+
+    private void viewAllBooks() {
+        System.out.println("\nAll Books:");
+        ListingWriter out = new ListingWriter(System.out, ListingWriter.Format.TEXT);
+        String next = null;
+        do {
+            next = service.listBooks(next, 0, PAGE_SIZE, out::book);
+            out.flush();
+        } while (next != null && nextPage());
+    }
+
+    // Asked between pages of a listing; anything but "q" shows the next one
+    private boolean nextPage() {
+        System.out.print("-- More (Enter = next page, q = stop) -- ");
+        return !scanner.nextLine().trim().equalsIgnoreCase("q");
+    }
+
+    private void borrowBook() {
+        System.out.print("Enter Book ID to borrow: ");
+        String bookId = scanner.nextLine().trim();
+        System.out.println(service.borrowBook(loggedInUser, bookId).getMessage());
+    }
+
+    private void returnBook() {
+        System.out.print("Enter Book ID to return: ");
+        String bookId = scanner.nextLine().trim();
+        System.out.println(service.returnBook(loggedInUser, bookId).getMessage());
+    }
+
+    private void searchBooks() {
+        System.out.print("Enter search keyword (title or author; end with * for suggestions): ");
+        String key = scanner.nextLine().trim();
+        if (key.endsWith("*")) {
+            showCompletions(key.substring(0, key.length() - 1));
+            return;
+        }
+        List<Book> res = service.searchBooks(key);
+        if (res.isEmpty()) {
+            System.out.println("No books found for the keyword.");
+            List<Book> similar = service.findSimilarBooks(key, SUGGESTIONS);
+            if (!similar.isEmpty()) {
+                System.out.println("Did you mean:");
+                ListingWriter out = new ListingWriter(System.out, ListingWriter.Format.TEXT);
+                similar.forEach(out::book);
+                out.flush();
+            }
+        } else {
+            ListingWriter out = new ListingWriter(System.out, ListingWriter.Format.TEXT);
+            res.forEach(out::book);
+            out.flush();
+        }
+    }
+
+    private void showCompletions(String prefix) {
+        List<CompletionIndex.Suggestion> found = service.completeBooks(prefix, SUGGESTIONS);
+        if (found.isEmpty()) {
+            System.out.println("No titles or authors start with \"" + prefix + "\".");
+            return;
+        }
+        for (CompletionIndex.Suggestion s : found) {
+            int more = s.getBookCount() - s.getBookIds().size();
+            System.out.println(s.getText() + " | " + s.getLoans() + " loans | " + String.join(", ", s.getBookIds())
+                    + (more > 0 ? " and " + more + " more" : "") + (s.getEdits() > 0 ? " (close match)" : ""));
+        }
+    }
+
+    private void holdsMenu() {
+        while (true) {
+            System.out.println("\nHolds");
+            System.out.println("1. Place Hold");
+            System.out.println("2. Cancel Hold");
+            System.out.println("3. My Holds");
+            System.out.println("4. Back");
+            System.out.print("Choice: ");
+            String c = scanner.nextLine().trim();
+            switch (c) {
+                case "1": {
+                    System.out.print("Enter Book ID to hold: ");
+                    String bookId = scanner.nextLine().trim();
+                    System.out.println(service.placeHold(loggedInUser, bookId).getMessage());
+                    break;
+                }
+                case "2": {
+                    System.out.print("Enter Book ID of the hold to cancel: ");
+                    String bookId = scanner.nextLine().trim();
+                    System.out.println(service.cancelHold(loggedInUser, bookId).getMessage());
+                    break;
+                }
+                case "3":
+                    showHolds(service.findHolds(loggedInUser.getId()), "You have no holds.");
+                    break;
+                case "4":
+                    return;
+                default:
+                    System.out.println("Invalid choice.");
+            }
+        }
+    }
+
+    private void showHolds(List<Hold> found, String none) {
+        if (found.isEmpty()) {
+            System.out.println(none);
+            return;
+        }
+        for (Hold h : found) {
+            int position = service.queuePosition(h);
+            System.out.println(h.toDisplayString() + (position > 0 ? " | Queue position: " + position : ""));
+        }
+    }
+
+    private void usersManagement() {
+        while (true) {
+            System.out.println("\nUsers Management");
+            System.out.println("1. Add User");
+            System.out.println("2. Update User");
+            System.out.println("3. Delete User");
+            System.out.println("4. Display Users");
+            System.out.println("5. Back");
+            System.out.print("Choice: ");
+            String c = scanner.nextLine().trim();
+            switch (c) {
+                case "1":
+                    addUser();
+                    break;
+                case "2":
+                    updateUser();
+                    break;
+                case "3":
+                    deleteUser();
+                    break;
+                case "4":
+                    displayUsers();
+                    break;
+                case "5":
+                    return;
+                default:
+                    System.out.println("Invalid choice.");
+            }
+        }
+    }
+
+    private void addUser() {
+        System.out.print("Enter new User ID: ");
+        String id = scanner.nextLine().trim();
+        if (service.findUser(id) != null) {
+            System.out.println("User ID already exists.");
+            return;
+        }
+        System.out.print("Enter Name: ");
+        String name = scanner.nextLine().trim();
+        System.out.print("Enter Password: ");
+        String pass = scanner.nextLine().trim();
+        System.out.print("Enter Role (user/admin): ");
+        String role = scanner.nextLine().trim();
+        System.out.println(service.addUser(id, name, pass, role).getMessage());
+    }
+
+    private void updateUser() {
+        System.out.print("Enter User ID to update: ");
+        String id = scanner.nextLine().trim();
+        if (service.findUser(id) == null) {
+            System.out.println("User not found.");
+            return;
+        }
+        System.out.print("Enter new name (leave blank to keep): ");
+        String name = scanner.nextLine().trim();
+        System.out.print("Enter new password (leave blank to keep): ");
+        String pass = scanner.nextLine().trim();
+        System.out.print("Enter new role (user/admin) (leave blank to keep): ");
+        String role = scanner.nextLine().trim();
+        System.out.println(service.updateUser(id, name, pass, role).getMessage());
+    }
+
+    private void deleteUser() {
+        System.out.print("Enter User ID to delete: ");
+        String id = scanner.nextLine().trim();
+        System.out.println(service.deleteUser(id).getMessage());
+    }
+
+    private void displayUsers() {
+        System.out.println("\nUsers:");
+        service.listUsers().forEach(User::displayInfo);
+    }
+
+    private void catalogueManagement() {
+        while (true) {
+            System.out.println("\nCatalogue Management");
+            System.out.println("1. Add Book");
+            System.out.println("2. Update Book");
+            System.out.println("3. Delete Book");
+            System.out.println("4. Display Books");
+            System.out.println("5. Back");
+            System.out.print("Choice: ");
+            String c = scanner.nextLine().trim();
+            switch (c) {
+                case "1":
+                    addBook();
+                    break;
+                case "2":
+                    updateBook();
+                    break;
+                case "3":
+                    deleteBook();
+                    break;
+                case "4":
+                    viewAllBooks();
+                    break;
+                case "5":
+                    return;
+                default:
+                    System.out.println("Invalid choice.");
+            }
+        }
+    }
+
+    private void addBook() {
+        System.out.print("Enter new Book ID: ");
+        String id = scanner.nextLine().trim();
+        if (service.findBook(id) != null) {
+            System.out.println("Book ID already exists.");
+            return;
+        }
+        System.out.print("Enter Title: ");
+        String title = scanner.nextLine().trim();
+        System.out.print("Enter Author: ");
+        String author = scanner.nextLine().trim();
+        System.out.print("Enter number of copies (leave blank for 1): ");
+        String copies = scanner.nextLine().trim();
+        System.out.println(service.addBook(id, title, author, copies.isEmpty() ? 1 : Integer.parseInt(copies)).getMessage());
+    }
+
+    private void updateBook() {
+        System.out.print("Enter Book ID to update: ");
+        String id = scanner.nextLine().trim();
+        if (service.findBook(id) == null) {
+            System.out.println("Book not found.");
+            return;
+        }
+        System.out.print("Enter new title (leave blank to keep): ");
+        String title = scanner.nextLine().trim();
+        System.out.print("Enter new author (leave blank to keep): ");
+        String author = scanner.nextLine().trim();
+        System.out.print("Set total copies (leave blank to keep): ");
+        String copies = scanner.nextLine().trim();
+        Integer total = copies.isEmpty() ? null : Integer.parseInt(copies);
+        System.out.println(service.updateBook(id, title, author, total).getMessage());
+    }
+
+    private void deleteBook() {
+        System.out.print("Enter Book ID to delete: ");
+        String id = scanner.nextLine().trim();
+        System.out.println(service.deleteBook(id).getMessage());
+    }
+
+    private void transactionsMenu() {
+        while (true) {
+            System.out.println("\nTransactions Menu");
+            System.out.println("1. View All Transactions");
+            System.out.println("2. View Transactions By User");
+            System.out.println("3. View Transactions By Book");
+            System.out.println("4. View Transactions Borrowed Between Dates");
+            System.out.println("5. View Overdue Loans");
+            System.out.println("6. View Open Loans Older Than N Days");
+            System.out.println("7. Most Borrowed Books");
+            System.out.println("8. Most Active Users");
+            System.out.println("9. Average Loan Duration");
+            System.out.println("10. Daily Circulation");
+            System.out.println("11. View Holds");
+            System.out.println("12. Place Hold for User");
+            System.out.println("13. Back");
+            System.out.print("Choice: ");
+            String c = scanner.nextLine().trim();
+            switch (c) {
+                case "1":
+                    viewAllTransactions();
+                    break;
+                case "2":
+                    viewTransactionsByUser();
+                    break;
+                case "3":
+                    viewTransactionsByBook();
+                    break;
+                case "4":
+                    viewTransactionsBorrowedBetween();
+                    break;
+                case "5":
+                    viewOverdueLoans();
+                    break;
+                case "6":
+                    viewOpenLoansOlderThan();
+                    break;
+                case "7":
+                    viewMostBorrowedBooks();
+                    break;
+                case "8":
+                    viewMostActiveUsers();
+                    break;
+                case "9":
+                    viewAverageLoanDuration();
+                    break;
+                case "10":
+                    viewDailyCirculation();
+                    break;
+                case "11":
+                    viewHolds();
+                    break;
+                case "12":
+                    placeHoldForUser();
+                    break;
+                case "13":
+                    return;
+                default:
+                    System.out.println("Invalid choice.");
+            }
+        }
+    }
+
+    private void viewHolds() {
+        System.out.print("Book ID (blank for every hold): ");
+        String bookId = scanner.nextLine().trim();
+        if (bookId.isEmpty()) {
+            showHolds(service.listHolds(), "No holds.");
+        } else {
+            showHolds(service.findHoldsOnBook(bookId), "No holds on this book.");
+        }
+    }
+
+    private void placeHoldForUser() {
+        System.out.print("Enter User ID: ");
+        User u = service.findUser(scanner.nextLine().trim());
+        if (u == null) {
+            System.out.println("User not found.");
+            return;
+        }
+        System.out.print("Enter Book ID: ");
+        String bookId = scanner.nextLine().trim();
+        System.out.print("Priority (blank = 0; higher is served first): ");
+        String priority = scanner.nextLine().trim();
+        try {
+            int p = priority.isEmpty() ? 0 : Integer.parseInt(priority);
+            System.out.println(service.placeHold(u, bookId, p).getMessage());
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid priority.");
+        }
+    }
+
+    private void viewMetrics() {
+        System.out.println("\nMetrics since startup (also published over JMX as library:*):");
+        System.out.print(metrics.report());
+    }
+
+    private void viewAllTransactions() {
+        System.out.println("\nAll Transactions:");
+        ListingWriter out = new ListingWriter(System.out, ListingWriter.Format.TEXT);
+        String next = null;
+        try {
+            do {
+                next = service.listTransactions(next, 0, PAGE_SIZE, out::transaction);
+                out.flush();
+            } while (next != null && nextPage());
+        } catch (IllegalStateException | UncheckedIOException e) {
+            out.flush();
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private void viewTransactionsByUser() {
+        System.out.print("Enter User ID: ");
+        String uid = scanner.nextLine().trim();
+        ListingWriter out = new ListingWriter(System.out, ListingWriter.Format.TEXT);
+        service.forEachTransactionByUser(uid, out::transaction);
+        out.flush();
+    }
+
+    private void viewTransactionsByBook() {
+        System.out.print("Enter Book ID: ");
+        String bid = scanner.nextLine().trim();
+        ListingWriter out = new ListingWriter(System.out, ListingWriter.Format.TEXT);
+        service.forEachTransactionByBook(bid, out::transaction);
+        out.flush();
+    }
+
+    private void viewTransactionsBorrowedBetween() {
+        try {
+            System.out.print("From date (YYYY-MM-DD): ");
+            LocalDate from = LocalDate.parse(scanner.nextLine().trim());
+            System.out.print("To date (YYYY-MM-DD): ");
+            LocalDate to = LocalDate.parse(scanner.nextLine().trim());
+            ListingWriter out = new ListingWriter(System.out, ListingWriter.Format.TEXT);
+            service.forEachTransactionBorrowedBetween(from, to, out::transaction);
+            if (out.getRows() == 0) out.note("No transactions in that range.");
+            out.flush();
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid date.");
+        }
+    }
+
+    private void viewOverdueLoans() {
+        LocalDate today = LocalDate.now();
+        List<Transaction> overdue = service.findOverdueLoans(today);
+        if (overdue.isEmpty()) {
+            System.out.println("No overdue loans.");
+            return;
+        }
+        ListingWriter out = new ListingWriter(System.out, ListingWriter.Format.TEXT);
+        for (Transaction t : overdue) {
+            LocalDate due = LibraryService.dueDate(t);
+            out.note(t.toDisplayString() + " | Due: " + due + " | " + (today.toEpochDay() - due.toEpochDay()) + " days overdue");
+        }
+        out.flush();
+    }
+
+    private void viewOpenLoansOlderThan() {
+        System.out.print("Minimum age in days: ");
+        int days;
+        try {
+            days = Integer.parseInt(scanner.nextLine().trim());
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid number.");
+            return;
+        }
+        List<Transaction> open = service.findOpenLoansOlderThan(days, LocalDate.now());
+        if (open.isEmpty()) {
+            System.out.println("No open loans older than " + days + " days.");
+            return;
+        }
+        ListingWriter out = new ListingWriter(System.out, ListingWriter.Format.TEXT);
+        open.forEach(out::transaction);
+        out.flush();
+    }
+
+    private void viewMostBorrowedBooks() {
+        List<Map.Entry<String, Long>> top = service.getCirculation().topBooks(TOP_COUNT);
+        if (top.isEmpty()) {
+            System.out.println("No loans yet.");
+            return;
+        }
+        int rank = 1;
+        for (Map.Entry<String, Long> e : top) {
+            Book b = service.findBook(e.getKey());
+            System.out.println(rank++ + ". " + e.getKey() + (b != null ? " | " + b.getTitle() : "")
+                    + " | " + e.getValue() + " loans");
+        }
+    }
+
+    private void viewMostActiveUsers() {
+        List<Map.Entry<String, Long>> top = service.getCirculation().topUsers(TOP_COUNT);
+        if (top.isEmpty()) {
+            System.out.println("No loans yet.");
+            return;
+        }
+        int rank = 1;
+        for (Map.Entry<String, Long> e : top) {
+            User u = service.findUser(e.getKey());
+            System.out.println(rank++ + ". " + e.getKey() + (u != null ? " | " + u.getName() : "")
+                    + " | " + e.getValue() + " loans");
+        }
+    }
+
+    private void viewAverageLoanDuration() {
+        CirculationStats stats = service.getCirculation();
+        if (stats.getReturnedLoans() == 0) {
+            System.out.println("No returned loans yet.");
+            return;
+        }
+        System.out.printf("Average loan duration: %.1f days over %d returned loans (%d loans in total)%n",
+                stats.averageLoanDays(), stats.getReturnedLoans(), stats.getLoans());
+    }
+
+    private void viewDailyCirculation() {
+        System.out.print("Number of days to show (default 30): ");
+        String input = scanner.nextLine().trim();
+        int days;
+        try {
+            days = input.isEmpty() ? 30 : Integer.parseInt(input);
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid number.");
+            return;
+        }
+        int today = (int) LocalDate.now().toEpochDay();
+        NavigableMap<Integer, long[]> counts = service.getCirculation().circulation(today - days + 1, today);
+        if (counts.isEmpty()) {
+            System.out.println("No circulation in the last " + days + " days.");
+            return;
+        }
+        ListingWriter out = new ListingWriter(System.out, ListingWriter.Format.TEXT);
+        counts.forEach((day, n) -> out.note(LocalDate.ofEpochDay(day) + " | Borrowed: " + n[0] + " | Returned: " + n[1]));
+        out.flush();
+    }
+
+    // Valid after startUp
+    LibraryService getService() {
+        return service;
+    }
+
+    Path getDataDir() {
+        return dataDir;
+    }
+
+    private Path file(String name) {
+        return dataDir.resolve(name);
+    }
+
+    private User findUserById(String id) {
+        return users.findById(id);
+    }
+
+    private Book findBookById(String id) {
+        return books.findById(id);
+    }
+}
@@ -0,0 +1,128 @@
+package library;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+// Renders book and transaction rows through a single large buffer, so a long
+// listing costs one write per BUFFER_SIZE bytes instead of one per line.
+// TEXT is the console format; CSV and JSONL are for piping into other tools.
+// Rows are written as they arrive; flush() at the end of a page.
+public class ListingWriter {
+    public enum Format {
+        TEXT, CSV, JSONL;
+
+        public static Format parse(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown format: " + name + " (expected text, csv or jsonl)");
+            }
+        }
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final BufferedWriter out;
+    private final Format format;
+    private boolean headerWritten = false;
+    private long rows = 0;
+
+    public ListingWriter(OutputStream stream, Format format) {
+        this.out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.format = format;
+    }
+
+    public void book(Book b) {
+        switch (format) {
+            case TEXT:
+                line(b.toDisplayString());
+                break;
+            case CSV:
+                header("bookId,title,author,available,total");
+                line(csv(b.getBookId()) + "," + csv(b.getTitle()) + "," + csv(b.getAuthor()) + ","
+                        + Math.max(0, b.getAvailableCopies()) + "," + b.getTotalCopies());
+                break;
+            case JSONL:
+                line("{\"bookId\":" + json(b.getBookId()) + ",\"title\":" + json(b.getTitle())
+                        + ",\"author\":" + json(b.getAuthor()) + ",\"available\":" + Math.max(0, b.getAvailableCopies())
+                        + ",\"total\":" + b.getTotalCopies() + "}");
+                break;
+        }
+    }
+
+    public void transaction(Transaction t) {
+        switch (format) {
+            case TEXT:
+                line(t.toDisplayString());
+                break;
+            case CSV:
+                header("transactionId,userId,bookId,dateBorrowed,dateReturned");
+                line(csv(t.getTransactionId()) + "," + csv(t.getUserId()) + "," + csv(t.getBookId()) + ","
+                        + dateOrEmpty(t.getDateBorrowed()) + "," + dateOrEmpty(t.getDateReturned()));
+                break;
+            case JSONL:
+                line("{\"transactionId\":" + json(t.getTransactionId()) + ",\"userId\":" + json(t.getUserId())
+                        + ",\"bookId\":" + json(t.getBookId()) + ",\"dateBorrowed\":" + jsonDate(t.getDateBorrowed())
+                        + ",\"dateReturned\":" + jsonDate(t.getDateReturned()) + "}");
+                break;
+        }
+    }
+
+    // Free-form text (prompts, notes); only TEXT output carries it
+    public void note(String text) {
+        if (format == Format.TEXT) line(text);
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void header(String columns) {
+        if (headerWritten) return;
+        headerWritten = true;
+        write(columns);
+    }
+
+    private void line(String text) {
+        rows++;
+        write(text);
+    }
+
+    private void write(String text) {
+        try {
+            out.write(text);
+            out.newLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String dateOrEmpty(Object date) {
+        return date != null ? date.toString() : "";
+    }
+
+    private static String jsonDate(Object date) {
+        return date != null ? "\"" + date + "\"" : "null";
+    }
+
+    private static String csv(String field) {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0) return field;
+        return "\"" + field.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String json(String s) {
+        return JsonLines.quote(s);
+    }
+}
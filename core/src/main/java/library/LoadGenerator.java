@@ -0,0 +1,180 @@
+package library;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Synthetic front-desk traffic against a LibraryService. Each worker thread
+// acts as its own patron and draws operations from a weighted mix: borrow
+// a random book, return one of its loans (borrowing instead when it has
+// none), or search for a word taken from a random title. With a target rate
+// the workers run open-loop on a fixed schedule and latency is measured from
+// each operation's scheduled start, so a stall is charged to every operation
+// it delayed rather than hidden (no coordinated omission); without one they
+// run flat out.
+public class LoadGenerator {
+    public enum Op { BORROW, RETURN, SEARCH }
+
+    private final LibraryService service;
+    private final int threads;
+    private final long durationNanos;
+    private final double rate;
+    private final Map<Op, Integer> mix;
+    private final long seed;
+    private final Map<Op, LatencyHistogram> latencies = new EnumMap<>(Op.class);
+    private final Map<Op, AtomicLong> refused = new EnumMap<>(Op.class);
+
+    // rate is total operations per second over all workers; 0 means unthrottled
+    public LoadGenerator(LibraryService service, int threads, long durationSeconds, double rate,
+                         Map<Op, Integer> mix, long seed) {
+        this.service = service;
+        this.threads = Math.max(1, threads);
+        this.durationNanos = TimeUnit.SECONDS.toNanos(durationSeconds);
+        this.rate = rate;
+        this.mix = mix;
+        this.seed = seed;
+        for (Op op : Op.values()) {
+            latencies.put(op, new LatencyHistogram());
+            refused.put(op, new AtomicLong());
+        }
+    }
+
+    // "borrow=20,return=20,search=60"; operations left out get weight 0
+    public static Map<Op, Integer> parseMix(String text) {
+        Map<Op, Integer> mix = new EnumMap<>(Op.class);
+        for (String part : text.split(",")) {
+            String[] kv = part.split("=");
+            if (kv.length != 2) throw new IllegalArgumentException("Bad mix entry: " + part);
+            int weight = Integer.parseInt(kv[1].trim());
+            if (weight < 0) throw new IllegalArgumentException("Negative weight: " + part);
+            mix.put(Op.valueOf(kv[0].trim().toUpperCase(Locale.ROOT)), weight);
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("The mix needs at least one positive weight");
+        }
+        return mix;
+    }
+
+    public String run() throws InterruptedException {
+        List<User> patrons = new ArrayList<>();
+        for (User u : service.listUsers()) {
+            if (!u.getRole().equalsIgnoreCase("admin")) patrons.add(u);
+        }
+        List<String> bookIds = new ArrayList<>();
+        List<String> words = new ArrayList<>();
+        service.listBooks(null, 0, 0, b -> {
+            bookIds.add(b.getBookId());
+            for (String w : b.getTitle().toLowerCase(Locale.ROOT).split("\\s+")) {
+                if (w.length() > 2) words.add(w);
+            }
+        });
+        if (patrons.isEmpty() || bookIds.isEmpty()) {
+            return "Nothing to do: the library needs at least one patron and one book.";
+        }
+        if (words.isEmpty()) words.add("");
+
+        List<Thread> workers = new ArrayList<>();
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50);
+        for (int i = 0; i < threads; i++) {
+            User patron = patrons.get(i % patrons.size());
+            Worker w = new Worker(patron, bookIds, words, new SplittableRandom(seed + i), start);
+            Thread t = new Thread(w, "load-" + i);
+            workers.add(t);
+            t.start();
+        }
+        for (Thread t : workers) {
+            t.join();
+        }
+        return report((System.nanoTime() - start) / 1e9);
+    }
+
+    private String report(double seconds) {
+        long total = 0;
+        long failed = 0;
+        Map<String, LatencyHistogram> byName = new LinkedHashMap<>();
+        for (Op op : Op.values()) {
+            total += latencies.get(op).getCount();
+            failed += refused.get(op).get();
+            if (latencies.get(op).getCount() > 0) byName.put(op.name(), latencies.get(op));
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d operations on %d thread(s) in %.1f s: %.1f ops/s achieved (target %s), %d refused%n",
+                total, threads, seconds, total / seconds, rate > 0 ? String.format("%.1f", rate) : "unthrottled", failed));
+        BatchRunner.appendLatencies(sb, byName);
+        for (Op op : Op.values()) {
+            if (refused.get(op).get() > 0) {
+                sb.append(String.format("%s refused: %d (e.g. book unavailable or loan limit reached)%n",
+                        op, refused.get(op).get()));
+            }
+        }
+        return sb.toString();
+    }
+
+    private final class Worker implements Runnable {
+        private final User patron;
+        private final List<String> bookIds;
+        private final List<String> words;
+        private final SplittableRandom random;
+        private final long start;
+        private final List<String> onLoan = new ArrayList<>();
+        private final int totalWeight;
+
+        Worker(User patron, List<String> bookIds, List<String> words, SplittableRandom random, long start) {
+            this.patron = patron;
+            this.bookIds = bookIds;
+            this.words = words;
+            this.random = random;
+            this.start = start;
+            this.totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        }
+
+        @Override
+        public void run() {
+            long interval = rate > 0 ? (long) (1e9 * threads / rate) : 0;
+            long end = start + durationNanos;
+            LockSupport.parkNanos(start - System.nanoTime());
+            for (long n = 0; ; n++) {
+                long scheduled = interval > 0 ? start + n * interval : System.nanoTime();
+                if (scheduled >= end) return;
+                long wait = scheduled - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+                Op op = pick();
+                if (op == Op.RETURN && onLoan.isEmpty()) op = Op.BORROW;
+                boolean ok = perform(op);
+                latencies.get(op).record(System.nanoTime() - scheduled);
+                if (!ok) refused.get(op).incrementAndGet();
+            }
+        }
+
+        private Op pick() {
+            int r = random.nextInt(totalWeight);
+            for (Map.Entry<Op, Integer> e : mix.entrySet()) {
+                r -= e.getValue();
+                if (r < 0) return e.getKey();
+            }
+            return Op.SEARCH;
+        }
+
+        private boolean perform(Op op) {
+            if (op == Op.RETURN) {
+                String bookId = onLoan.remove(random.nextInt(onLoan.size()));
+                return service.returnBook(patron, bookId).isSuccess();
+            }
+            if (op == Op.SEARCH) {
+                service.searchBooks(words.get(random.nextInt(words.size())));
+                return true;
+            }
+            String bookId = bookIds.get(random.nextInt(bookIds.size()));
+            boolean ok = service.borrowBook(patron, bookId).isSuccess();
+            if (ok) onLoan.add(bookId);
+            return ok;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package library;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Logins verified in the last TTL, by case-folded name, so a kiosk logging
+// the same patron in over and over pays for PBKDF2 once per TTL. An entry
+// keeps a SHA-256 of the password under a random per-process key, never the
+// password itself. The service drops a user's entries when the user is
+// changed or deleted; a login verified before that only caches itself if
+// no invalidation happened in between.
+public class LoginCache {
+    private static final int MAX_ENTRIES = 10_000;
+
+    private final long ttlNanos;
+    private final byte[] key = new byte[32];
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    private static final class Entry {
+        final String userId;
+        final byte[] digest;
+        final long expires;
+
+        Entry(String userId, byte[] digest, long expires) {
+            this.userId = userId;
+            this.digest = digest;
+            this.expires = expires;
+        }
+    }
+
+    public LoginCache(long ttlSeconds) {
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+        new SecureRandom().nextBytes(key);
+    }
+
+    // The ID of the user this name and password verified as, if still fresh
+    public String lookup(String foldedName, String password) {
+        if (ttlNanos <= 0) return null;
+        Entry e = entries.get(foldedName);
+        if (e == null) return null;
+        if (System.nanoTime() - e.expires > 0) {
+            entries.remove(foldedName, e);
+            return null;
+        }
+        return MessageDigest.isEqual(e.digest, digest(password)) ? e.userId : null;
+    }
+
+    // Read before verifying a login, and passed to put afterwards
+    public long generation() {
+        return generation.get();
+    }
+
+    public synchronized void put(String foldedName, String userId, String password, long seenGeneration) {
+        if (ttlNanos <= 0 || generation.get() != seenGeneration) return;
+        if (entries.size() >= MAX_ENTRIES) {
+            long now = System.nanoTime();
+            entries.values().removeIf(e -> now - e.expires > 0);
+            if (entries.size() >= MAX_ENTRIES) entries.clear();
+        }
+        entries.put(foldedName, new Entry(userId, digest(password), System.nanoTime() + ttlNanos));
+    }
+
+    public synchronized void invalidateUser(String userId) {
+        generation.incrementAndGet();
+        entries.values().removeIf(e -> e.userId.equals(userId));
+    }
+
+    private byte[] digest(String password) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update(key);
+            return sha.digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
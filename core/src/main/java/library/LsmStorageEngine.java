@@ -0,0 +1,403 @@
+package library;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
+
+// A log-structured merge engine in one directory. Writes go to a sorted
+// in-memory memtable, which is written out as a new SSTable once it passes
+// MEMTABLE_BYTES or on flush(). Reads look in the memtable, then in the
+// tables from newest to oldest. When COMPACT_AT tables have piled up, a
+// background thread merges them into one, dropping overwritten values and
+// deletions. MANIFEST lists the live tables, oldest first, and about how many
+// keys they hold; any other table file in the directory is a leftover and is
+// deleted on open.
+//
+// The key count is kept without reading: a write counts a key as already
+// there if the memtable says so, or else if any table's bloom filter might
+// hold it. A bloom false positive, or a key whose newest entry is a deletion,
+// throws the count off; each compaction puts it right again, since its output
+// holds exactly the live keys of the tables it merged.
+public class LsmStorageEngine implements StorageEngine {
+    // A deleted key, in the memtable and in table lookups; compared by identity
+    static final String TOMBSTONE = new String("<deleted>");
+    private static final long MEMTABLE_BYTES = Long.getLong("library.memtableBytes", 8L << 20);
+    private static final int COMPACT_AT = 4;
+    private static final String MANIFEST = "MANIFEST";
+    private static final String COUNT = "count=";
+
+    private final Path dir;
+    private ConcurrentSkipListMap<String, String> memtable = new ConcurrentSkipListMap<>();
+    private long memtableBytes = 0;
+    // Oldest first
+    private final List<SSTable> tables = new ArrayList<>();
+    private long nextNumber = 1;
+    // Live keys, about; what the memtable and each newer table added to it
+    // since the last compaction
+    private long count = 0;
+    private long memtableDelta = 0;
+    private final Map<SSTable, Long> tableDeltas = new HashMap<>();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "lsm-compaction");
+        t.setDaemon(true);
+        return t;
+    });
+    private boolean compacting = false;
+    private boolean closed = false;
+
+    private LsmStorageEngine(Path dir) {
+        this.dir = dir;
+    }
+
+    public static boolean exists(Path dir) {
+        return Files.exists(dir.resolve(MANIFEST));
+    }
+
+    public static LsmStorageEngine open(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        LsmStorageEngine engine = new LsmStorageEngine(dir);
+        Set<Path> live = new HashSet<>();
+        Path manifest = dir.resolve(MANIFEST);
+        long count = 0;
+        boolean counted = !Files.exists(manifest);
+        if (Files.exists(manifest)) {
+            for (String name : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                if (name.isBlank()) continue;
+                if (name.startsWith(COUNT)) {
+                    count = Long.parseLong(name.substring(COUNT.length()).trim());
+                    counted = true;
+                    continue;
+                }
+                Path path = dir.resolve(name.trim());
+                engine.tables.add(SSTable.open(path));
+                live.add(path);
+                engine.nextNumber = Math.max(engine.nextNumber, numberOf(path) + 1);
+            }
+        }
+        // Tables a crash left behind before (or a compaction after) the manifest was rewritten
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.{sst,tmp}")) {
+            for (Path f : files) {
+                if (!live.contains(f)) Files.delete(f);
+            }
+        }
+        if (!counted) throw new IOException(manifest + " has no key count");
+        engine.count = count;
+        if (!Files.exists(manifest)) engine.writeManifest();
+        synchronized (engine) {
+            engine.maybeCompact();
+        }
+        return engine;
+    }
+
+    // Removes an engine's directory (closed) and everything in it; the
+    // manifest goes first, so a crash part way leaves only leftovers
+    public static void delete(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) return;
+        Files.deleteIfExists(dir.resolve(MANIFEST));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path f : files) Files.delete(f);
+        }
+        Files.delete(dir);
+    }
+
+    @Override
+    public String get(String key) throws IOException {
+        Map<String, String> mem;
+        List<SSTable> newestFirst;
+        synchronized (this) {
+            mem = memtable;
+            newestFirst = acquireTables();
+        }
+        try {
+            String value = mem.get(key);
+            for (int i = 0; value == null && i < newestFirst.size(); i++) {
+                value = newestFirst.get(i).get(key);
+            }
+            return value == TOMBSTONE ? null : value;
+        } finally {
+            release(newestFirst);
+        }
+    }
+
+    @Override
+    public synchronized void put(String key, String value) throws IOException {
+        if (value == null) throw new IllegalArgumentException("Null value for " + key);
+        write(key, value);
+    }
+
+    @Override
+    public synchronized void delete(String key) throws IOException {
+        write(key, TOMBSTONE);
+    }
+
+    @Override
+    public void scan(String afterKey, BiPredicate<String, String> visitor) throws IOException {
+        Map<String, String> mem;
+        List<SSTable> newestFirst;
+        synchronized (this) {
+            mem = afterKey == null ? memtable : memtable.tailMap(afterKey, false);
+            newestFirst = acquireTables();
+        }
+        try {
+            Merge merge = new Merge(mem, newestFirst, afterKey);
+            while (merge.hasNext()) {
+                Map.Entry<String, String> e = merge.next();
+                if (!visitor.test(e.getKey(), e.getValue())) return;
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            release(newestFirst);
+        }
+    }
+
+    @Override
+    public synchronized long size() {
+        return Math.max(count, 0);
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (memtable.isEmpty()) return;
+        Path path = tablePath(nextNumber++);
+        Iterator<Map.Entry<String, String>> entries = memtable.entrySet().stream()
+                .map(e -> (Map.Entry<String, String>) new AbstractMap.SimpleEntry<>(e.getKey(),
+                        e.getValue() == TOMBSTONE ? null : e.getValue()))
+                .iterator();
+        SSTable.write(path, entries, memtable.size());
+        SSTable table = SSTable.open(path);
+        tables.add(table);
+        tableDeltas.put(table, memtableDelta);
+        memtableDelta = 0;
+        writeManifest();
+        memtable = new ConcurrentSkipListMap<>();
+        memtableBytes = 0;
+        maybeCompact();
+    }
+
+    // Flushes, waits for a running compaction and closes the tables
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) return;
+            flush();
+            closed = true;
+        }
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            for (SSTable t : tables) t.close();
+            tables.clear();
+        }
+    }
+
+    public synchronized int getTableCount() {
+        return tables.size();
+    }
+
+    private void write(String key, String value) throws IOException {
+        if (closed) throw new IOException("Storage in " + dir + " is closed");
+        String old = memtable.get(key);
+        boolean existed = old != null ? old != TOMBSTONE : mightBeInTables(key);
+        if (existed != (value != TOMBSTONE)) {
+            long change = existed ? -1 : 1;
+            count += change;
+            memtableDelta += change;
+        }
+        memtable.put(key, value);
+        memtableBytes += 2L * (key.length() + value.length()) + 64;
+        if (memtableBytes >= MEMTABLE_BYTES) flush();
+    }
+
+    private boolean mightBeInTables(String key) {
+        for (SSTable t : tables) {
+            if (t.mightContain(key)) return true;
+        }
+        return false;
+    }
+
+    private void maybeCompact() {
+        if (compacting || closed || tables.size() < COMPACT_AT) return;
+        compacting = true;
+        List<SSTable> inputs = acquireTables();
+        long number = nextNumber++;
+        compactor.execute(() -> compact(inputs, number));
+    }
+
+    // Every table is an input, so deletions have nothing older left to hide and are dropped
+    private void compact(List<SSTable> newestFirst, long number) {
+        Path path = tablePath(number);
+        try {
+            int records = 0;
+            for (SSTable t : newestFirst) records += t.getCount();
+            SSTable.write(path, new Merge(Collections.emptyMap(), newestFirst, null), records);
+            SSTable merged = SSTable.open(path);
+            synchronized (this) {
+                tables.removeAll(newestFirst);
+                tables.add(0, merged);
+                // The merged table holds only live keys; what was written
+                // since is still an estimate
+                count = merged.getCount() + memtableDelta;
+                for (SSTable t : newestFirst) tableDeltas.remove(t);
+                for (long change : tableDeltas.values()) count += change;
+                writeManifest();
+            }
+            for (SSTable t : newestFirst) t.retire();
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Compaction of " + dir + " failed: " + e.getMessage());
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ignored) {
+                // Deleted as a leftover on the next open
+            }
+        } finally {
+            try {
+                release(newestFirst);
+            } catch (IOException e) {
+                System.err.println("Error closing a table in " + dir + ": " + e.getMessage());
+            }
+            synchronized (this) {
+                compacting = false;
+                maybeCompact();
+            }
+        }
+    }
+
+    private List<SSTable> acquireTables() {
+        List<SSTable> newestFirst = new ArrayList<>(tables.size());
+        for (int i = tables.size() - 1; i >= 0; i--) {
+            SSTable t = tables.get(i);
+            if (t.acquire()) newestFirst.add(t);
+        }
+        return newestFirst;
+    }
+
+    private static void release(List<SSTable> acquired) throws IOException {
+        for (SSTable t : acquired) t.release();
+    }
+
+    private void writeManifest() throws IOException {
+        StringBuilder text = new StringBuilder(COUNT).append(count - memtableDelta).append('\n');
+        for (SSTable t : tables) text.append(t.getPath().getFileName()).append('\n');
+        AtomicFiles.replace(dir.resolve(MANIFEST), text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Path tablePath(long number) {
+        return dir.resolve(String.format("%08d.sst", number));
+    }
+
+    private static long numberOf(Path table) {
+        String name = table.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.indexOf('.')));
+    }
+
+    // Merges the memtable and the tables (newest first) into one run in key
+    // order; for a key in several sources the newest wins, and deleted keys
+    // are skipped
+    private static final class Merge implements Iterator<Map.Entry<String, String>> {
+        private final PriorityQueue<Source> heads = new PriorityQueue<>((a, b) -> {
+            int cmp = a.key.compareTo(b.key);
+            return cmp != 0 ? cmp : Integer.compare(a.rank, b.rank);
+        });
+        private Map.Entry<String, String> next;
+
+        Merge(Map<String, String> memtable, List<SSTable> newestFirst, String afterKey) throws IOException {
+            Iterator<Map.Entry<String, String>> mem = memtable.entrySet().iterator();
+            add(new Source(0) {
+                @Override
+                void advance() {
+                    Map.Entry<String, String> e = mem.hasNext() ? mem.next() : null;
+                    key = e == null ? null : e.getKey();
+                    value = e == null ? null : e.getValue();
+                }
+            });
+            for (int i = 0; i < newestFirst.size(); i++) {
+                SSTable.Cursor cursor = newestFirst.get(i).cursor(afterKey);
+                add(new Source(i + 1) {
+                    private boolean started = false;
+
+                    @Override
+                    void advance() throws IOException {
+                        if (started) cursor.next();
+                        started = true;
+                        key = cursor.key;
+                        value = cursor.value;
+                    }
+                });
+            }
+            findNext();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, String> next() {
+            if (next == null) throw new NoSuchElementException();
+            Map.Entry<String, String> e = next;
+            try {
+                findNext();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            return e;
+        }
+
+        private void findNext() throws IOException {
+            next = null;
+            while (next == null && !heads.isEmpty()) {
+                Source newest = heads.poll();
+                String key = newest.key;
+                String value = newest.value;
+                add(newest);
+                while (!heads.isEmpty() && heads.peek().key.equals(key)) {
+                    add(heads.poll());
+                }
+                if (value != TOMBSTONE) next = new AbstractMap.SimpleImmutableEntry<>(key, value);
+            }
+        }
+
+        // Advances a source and puts it back unless it ran out
+        private void add(Source s) throws IOException {
+            s.advance();
+            if (s.key != null) heads.add(s);
+        }
+    }
+
+    private abstract static class Source {
+        final int rank;
+        String key;
+        String value;
+
+        Source(int rank) {
+            this.rank = rank;
+        }
+
+        abstract void advance() throws IOException;
+    }
+}
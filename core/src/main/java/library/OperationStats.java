@@ -0,0 +1,76 @@
+package library;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class OperationStats implements OperationStatsMBean {
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong errors = new AtomicLong();
+    private volatile long startedAt = System.nanoTime();
+
+    public OperationStats(String name) {
+        this.name = name;
+    }
+
+    void record(long nanos, boolean success) {
+        latency.record(nanos);
+        if (!success) errors.incrementAndGet();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCount() {
+        return latency.getCount();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.get();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return latency.getMean() / 1000.0;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return latency.getPercentile(50) / 1000.0;
+    }
+
+    @Override
+    public double getP90Micros() {
+        return latency.getPercentile(90) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return latency.getPercentile(99) / 1000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return latency.getPercentile(99.9) / 1000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return latency.getMax() / 1000.0;
+    }
+
+    @Override
+    public double getThroughput() {
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+        return seconds > 0 ? latency.getCount() / seconds : 0;
+    }
+
+    @Override
+    public void reset() {
+        latency.reset();
+        errors.set(0);
+        startedAt = System.nanoTime();
+    }
+}
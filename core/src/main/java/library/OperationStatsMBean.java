@@ -0,0 +1,25 @@
+package library;
+
+// JMX view of one instrumented operation. Latencies are in microseconds.
+public interface OperationStatsMBean {
+    long getCount();
+
+    long getErrors();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP90Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+
+    // Calls per second since startup
+    double getThroughput();
+
+    void reset();
+}
@@ -1,3 +1,5 @@
+package library;
+
 public class Person {
     protected String id;
     protected String name;
@@ -8,7 +10,11 @@ public class Person {
     }
 
     public void displayInfo() {
-        System.out.println("ID: " + id + " | Name: " + name);
+        System.out.println(toDisplayString());
+    }
+
+    public String toDisplayString() {
+        return "ID: " + id + " | Name: " + name;
     }
 
     public String getId() {
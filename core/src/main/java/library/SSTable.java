@@ -0,0 +1,285 @@
+package library;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// One immutable sorted run of an LsmStorageEngine. Layout: the records in key
+// order (int key length, key, a flag byte, then int value length and value
+// unless the flag marks a deletion), a sparse index with every INDEX_EVERY-th
+// key and its offset, a bloom filter over all keys, and a fixed footer. Only
+// the index and the filter are held in memory; a lookup reads one block of
+// at most INDEX_EVERY records, and none at all when the filter rules it out.
+final class SSTable {
+    private static final int MAGIC = 0x4C534D54; // "LSMT"
+    private static final int FOOTER_BYTES = 16;
+    private static final int INDEX_EVERY = 64;
+    private static final byte VALUE = 0;
+    private static final byte DELETED = 1;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final String[] indexKeys;
+    private final long[] indexOffsets;
+    private final long dataEnd;
+    private final BloomFilter bloom;
+    private final int count;
+    // The engine's reference plus one per reader; the file goes when it drops to 0
+    private final AtomicInteger refs = new AtomicInteger(1);
+    private volatile boolean obsolete = false;
+
+    private SSTable(Path path, FileChannel channel, String[] indexKeys, long[] indexOffsets, long dataEnd,
+                    BloomFilter bloom, int count) {
+        this.path = path;
+        this.channel = channel;
+        this.indexKeys = indexKeys;
+        this.indexOffsets = indexOffsets;
+        this.dataEnd = dataEnd;
+        this.bloom = bloom;
+        this.count = count;
+    }
+
+    // Writes entries, in key order, through a temp file that is fsynced and
+    // renamed into place. A null value records a deletion. maxCount sizes the
+    // bloom filter.
+    static void write(Path path, Iterator<Map.Entry<String, String>> entries, int maxCount) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        BloomFilter bloom = new BloomFilter(maxCount);
+        int indexSize = maxCount / INDEX_EVERY + 1;
+        String[] indexKeys = new String[indexSize];
+        long[] indexOffsets = new long[indexSize];
+        int indexed = 0;
+        int count = 0;
+        long offset = 0;
+        try (FileOutputStream file = new FileOutputStream(tmp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            while (entries.hasNext()) {
+                Map.Entry<String, String> e = entries.next();
+                if (count % INDEX_EVERY == 0) {
+                    indexKeys[indexed] = e.getKey();
+                    indexOffsets[indexed++] = offset;
+                }
+                byte[] key = e.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(key.length);
+                out.write(key);
+                offset += 4 + key.length + 1;
+                if (e.getValue() == null) {
+                    out.writeByte(DELETED);
+                } else {
+                    byte[] value = e.getValue().getBytes(StandardCharsets.UTF_8);
+                    out.writeByte(VALUE);
+                    out.writeInt(value.length);
+                    out.write(value);
+                    offset += 4 + value.length;
+                }
+                bloom.add(e.getKey());
+                count++;
+            }
+            long indexOffset = offset;
+            out.writeInt(indexed);
+            for (int i = 0; i < indexed; i++) {
+                byte[] key = indexKeys[i].getBytes(StandardCharsets.UTF_8);
+                out.writeInt(key.length);
+                out.write(key);
+                out.writeLong(indexOffsets[i]);
+            }
+            bloom.write(out);
+            out.writeLong(indexOffset);
+            out.writeInt(count);
+            out.writeInt(MAGIC);
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static SSTable open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < FOOTER_BYTES) throw new IOException(path + " is too short for a table");
+            ByteBuffer footer = readFully(channel, size - FOOTER_BYTES, FOOTER_BYTES);
+            long indexOffset = footer.getLong();
+            int count = footer.getInt();
+            if (footer.getInt() != MAGIC || indexOffset < 0 || indexOffset > size - FOOTER_BYTES) {
+                throw new IOException(path + " is not a table");
+            }
+            ByteBuffer meta = readFully(channel, indexOffset, (int) (size - FOOTER_BYTES - indexOffset));
+            int indexed = meta.getInt();
+            String[] indexKeys = new String[indexed];
+            long[] indexOffsets = new long[indexed];
+            for (int i = 0; i < indexed; i++) {
+                indexKeys[i] = readString(meta, meta.getInt());
+                indexOffsets[i] = meta.getLong();
+            }
+            BloomFilter bloom = BloomFilter.read(meta);
+            return new SSTable(path, channel, indexKeys, indexOffsets, indexOffset, bloom, count);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e instanceof IOException ? (IOException) e : new IOException(path + " is damaged", e);
+        }
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    // False when key is certainly not in this table; reads nothing from disk
+    boolean mightContain(String key) {
+        return bloom.mightContain(key) && floorBlock(key) >= 0;
+    }
+
+    // The value under key, LsmStorageEngine.TOMBSTONE for a deletion, or null
+    // when this table knows nothing about key
+    String get(String key) throws IOException {
+        if (!bloom.mightContain(key)) return null;
+        int block = floorBlock(key);
+        if (block < 0) return null;
+        long end = block + 1 < indexOffsets.length ? indexOffsets[block + 1] : dataEnd;
+        ByteBuffer buf = readFully(channel, indexOffsets[block], (int) (end - indexOffsets[block]));
+        while (buf.hasRemaining()) {
+            String k = readString(buf, buf.getInt());
+            byte flag = buf.get();
+            int cmp = k.compareTo(key);
+            if (cmp == 0) return flag == DELETED ? LsmStorageEngine.TOMBSTONE : readString(buf, buf.getInt());
+            if (cmp > 0) return null;
+            if (flag == VALUE) {
+                int valueLength = buf.getInt();
+                buf.position(buf.position() + valueLength);
+            }
+        }
+        return null;
+    }
+
+    // Entries after afterKey (all when null) in key order; deletions carry
+    // LsmStorageEngine.TOMBSTONE as their value
+    Cursor cursor(String afterKey) throws IOException {
+        int block = afterKey == null ? 0 : Math.max(0, floorBlock(afterKey));
+        Cursor c = new Cursor(indexOffsets.length == 0 ? dataEnd : indexOffsets[block]);
+        while (afterKey != null && c.key != null && c.key.compareTo(afterKey) <= 0) c.next();
+        return c;
+    }
+
+    // A reader must hold a reference while it uses the table
+    boolean acquire() {
+        while (true) {
+            int n = refs.get();
+            if (n == 0) return false;
+            if (refs.compareAndSet(n, n + 1)) return true;
+        }
+    }
+
+    void release() throws IOException {
+        if (refs.decrementAndGet() == 0) {
+            channel.close();
+            if (obsolete) Files.deleteIfExists(path);
+        }
+    }
+
+    // Drops the engine's reference; the file is deleted once the last reader is done
+    void retire() throws IOException {
+        obsolete = true;
+        release();
+    }
+
+    // Closes without deleting (engine shutdown)
+    void close() throws IOException {
+        release();
+    }
+
+    private int floorBlock(String key) {
+        int lo = 0;
+        int hi = indexKeys.length - 1;
+        int found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (indexKeys[mid].compareTo(key) <= 0) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    final class Cursor {
+        private long pos;
+        private ByteBuffer buf = ByteBuffer.allocate(1 << 16).flip();
+        String key;
+        String value;
+
+        private Cursor(long start) throws IOException {
+            pos = start;
+            next();
+        }
+
+        // Moves to the next entry; key is null at the end
+        void next() throws IOException {
+            if (!fill(4)) {
+                key = null;
+                return;
+            }
+            int keyLength = buf.getInt();
+            fill(keyLength + 1);
+            key = readString(buf, keyLength);
+            if (buf.get() == DELETED) {
+                value = LsmStorageEngine.TOMBSTONE;
+                return;
+            }
+            fill(4);
+            int valueLength = buf.getInt();
+            fill(valueLength);
+            value = readString(buf, valueLength);
+        }
+
+        // Makes n bytes available in buf; false at the end of the records
+        private boolean fill(int n) throws IOException {
+            if (buf.remaining() >= n) return true;
+            if (buf.capacity() < n) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(n, buf.capacity() * 2));
+                bigger.put(buf).flip();
+                buf = bigger;
+            }
+            buf.compact();
+            while (buf.position() < n && pos < dataEnd) {
+                int limit = (int) Math.min(buf.capacity(), buf.position() + (dataEnd - pos));
+                buf.limit(limit);
+                int read = channel.read(buf, pos);
+                if (read < 0) break;
+                pos += read;
+            }
+            buf.flip();
+            return buf.remaining() >= n;
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long offset, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, offset + buf.position()) < 0) throw new IOException("Unexpected end of table");
+        }
+        return buf.flip();
+    }
+
+    private static String readString(ByteBuffer buf, int length) {
+        String s = new String(buf.array(), buf.arrayOffset() + buf.position(), length, StandardCharsets.UTF_8);
+        buf.position(buf.position() + length);
+        return s;
+    }
+}
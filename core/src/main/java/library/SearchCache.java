@@ -0,0 +1,152 @@
+package library;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Search results (sorted book IDs) by normalized query, bounded by total
+// weight (one per entry plus one per ID). Eviction is LRU, but a new query
+// only displaces the LRU entry if a TinyLFU frequency sketch has seen it more
+// often, so a burst of one-off searches cannot flush the front desk's
+// regulars. The owner reports catalogue changes; each one drops exactly the
+// entries whose result set it changes. Availability is read from the Book
+// objects at display time, so it never invalidates anything.
+public class SearchCache {
+    // Results bigger than this share of the budget are not worth keeping
+    private static final int MAX_ENTRY_SHARE = 8;
+
+    private final int maxWeight;
+    private final LinkedHashMap<String, List<String>> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final FrequencySketch sketch = new FrequencySketch();
+    private long weight = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public SearchCache(int maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    public synchronized List<String> get(String query) {
+        sketch.increment(query);
+        List<String> ids = entries.get(query);
+        if (ids != null) hits++;
+        else misses++;
+        return ids;
+    }
+
+    public synchronized void put(String query, List<String> ids) {
+        long w = weigh(ids);
+        if (maxWeight <= 0 || w > maxWeight / MAX_ENTRY_SHARE) return;
+        List<String> old = entries.remove(query);
+        if (old != null) weight -= weigh(old);
+        int frequency = sketch.frequency(query);
+        Iterator<Map.Entry<String, List<String>>> lru = entries.entrySet().iterator();
+        while (weight + w > maxWeight && lru.hasNext()) {
+            Map.Entry<String, List<String>> victim = lru.next();
+            if (sketch.frequency(victim.getKey()) > frequency) return;
+            weight -= weigh(victim.getValue());
+            lru.remove();
+            evictions++;
+        }
+        entries.put(query, Collections.unmodifiableList(ids));
+        weight += w;
+    }
+
+    // A book was added: any query it matches gained a row
+    public synchronized void bookAdded(Book book) {
+        entries.entrySet().removeIf(e -> matches(e.getKey(), book) && drop(e.getValue()));
+    }
+
+    // A book's title or author changed: results it joined or left are stale
+    public synchronized void bookChanged(Book book) {
+        entries.entrySet().removeIf(e -> contains(e.getValue(), book.getBookId()) != matches(e.getKey(), book)
+                && drop(e.getValue()));
+    }
+
+    public synchronized void bookRemoved(String bookId) {
+        entries.entrySet().removeIf(e -> contains(e.getValue(), bookId) && drop(e.getValue()));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private boolean drop(List<String> ids) {
+        weight -= weigh(ids);
+        return true;
+    }
+
+    private static boolean matches(String query, Book book) {
+        return BookSearchIndex.normalize(book.getTitle()).contains(query)
+                || BookSearchIndex.normalize(book.getAuthor()).contains(query);
+    }
+
+    private static boolean contains(List<String> sortedIds, String bookId) {
+        return Collections.binarySearch(sortedIds, bookId) >= 0;
+    }
+
+    private static long weigh(List<String> ids) {
+        return 1L + ids.size();
+    }
+
+    // Count-min sketch of recent query frequencies: four 4-bit counters per
+    // query (one per row, saturating at 15), all halved every SAMPLE_SIZE
+    // increments so old popularity fades
+    private static final class FrequencySketch {
+        private static final int WIDTH = 1 << 12;
+        private static final int SAMPLE_SIZE = 10 * WIDTH;
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+        private final byte[][] counters = new byte[SEEDS.length][WIDTH];
+        private int increments = 0;
+
+        void increment(String key) {
+            int h = key.hashCode();
+            for (int i = 0; i < SEEDS.length; i++) {
+                byte[] row = counters[i];
+                int slot = slot(h, i);
+                if (row[slot] < 15) row[slot]++;
+            }
+            if (++increments == SAMPLE_SIZE) {
+                for (byte[] row : counters) {
+                    for (int j = 0; j < WIDTH; j++) row[j] >>= 1;
+                }
+                increments = 0;
+            }
+        }
+
+        int frequency(String key) {
+            int h = key.hashCode();
+            int min = Integer.MAX_VALUE;
+            for (int i = 0; i < SEEDS.length; i++) {
+                min = Math.min(min, counters[i][slot(h, i)]);
+            }
+            return min;
+        }
+
+        private static int slot(int hash, int row) {
+            int h = hash * SEEDS[row];
+            return (h ^ (h >>> 16)) & (WIDTH - 1);
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package library;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// The optional sharded layout of the text files, under shards/: users and
+// books spread over N files each by hash of their ID, and transactions in one
+// file per month of borrowing (so new loans only touch the current month).
+// shards/manifest names the shard count and the months; a file it does not
+// name is not part of the data. Shards are read and written in parallel, and
+// a save only rewrites the shards with changes.
+public class ShardedLayout {
+    public static final String DIR = "shards";
+    private static final String MANIFEST = "manifest";
+
+    private final Path dir;
+    private final int shards;
+    private final Set<YearMonth> months = new TreeSet<>();
+
+    public static class Contents {
+        public final List<User> users = new ArrayList<>();
+        public final List<Book> books = new ArrayList<>();
+        // Still loading when load returns, so the history can follow in the background
+        public CompletableFuture<List<TransactionTable>> transactions;
+    }
+
+    private ShardedLayout(Path dir, int shards) {
+        this.dir = dir;
+        this.shards = shards;
+    }
+
+    // The layout in dataDir, or null when the data is in the single files
+    public static ShardedLayout open(Path dataDir) throws IOException {
+        Path manifest = dataDir.resolve(DIR).resolve(MANIFEST);
+        if (!Files.exists(manifest)) return null;
+        int shards = 0;
+        List<YearMonth> months = new ArrayList<>();
+        // Format: "shards=8" and "months=2025-09,2025-10"
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            int eq = line.indexOf('=');
+            if (line.startsWith("#") || eq < 0) continue;
+            String value = line.substring(eq + 1).trim();
+            switch (line.substring(0, eq).trim()) {
+                case "shards":
+                    shards = Integer.parseInt(value);
+                    break;
+                case "months":
+                    for (String m : value.split(",")) {
+                        if (!m.isBlank()) months.add(YearMonth.parse(m.trim()));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (shards < 1) throw new IOException(manifest + " has no shard count");
+        ShardedLayout layout = new ShardedLayout(dataDir.resolve(DIR), shards);
+        layout.months.addAll(months);
+        return layout;
+    }
+
+    // An empty layout; the first save writes every shard and the manifest
+    public static ShardedLayout create(Path dataDir, int shards) throws IOException {
+        if (shards < 1) throw new IllegalArgumentException("At least one shard is needed");
+        Files.createDirectories(dataDir.resolve(DIR));
+        return new ShardedLayout(dataDir.resolve(DIR), shards);
+    }
+
+    public static int shardOf(String id, int shards) {
+        // String.hashCode is fixed by the language spec, so shards are stable across runs
+        return Math.floorMod(id.hashCode(), shards);
+    }
+
+    // Every shard file is read concurrently; users and books are in when this
+    // returns, transaction months follow (oldest first). With historyLater
+    // the months are only started once users and books are in. Without parseBook the book shards are not read (the
+    // catalogue is in a StoredBookRepository).
+    public Contents load(DataFileLoader loader, Function<String[], User> parseUser, Function<String[], Book> parseBook,
+                         BiConsumer<TransactionTable, String[]> parseTransaction, boolean historyLater)
+            throws IOException {
+        List<CompletableFuture<List<User>>> users = new ArrayList<>();
+        List<CompletableFuture<List<Book>>> books = new ArrayList<>();
+        List<CompletableFuture<List<TransactionTable>>> transactions = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            users.add(loader.readAsync(existing(usersShard(i)), parseUser));
+            if (parseBook != null) books.add(loader.readAsync(existing(booksShard(i)), parseBook));
+        }
+        if (!historyLater) readMonths(loader, parseTransaction, transactions);
+        Contents contents = new Contents();
+        for (CompletableFuture<List<User>> f : users) contents.users.addAll(DataFileLoader.await(f));
+        for (CompletableFuture<List<Book>> f : books) contents.books.addAll(DataFileLoader.await(f));
+        if (historyLater) readMonths(loader, parseTransaction, transactions);
+        contents.transactions = CompletableFuture.allOf(transactions.toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> {
+                    List<TransactionTable> all = new ArrayList<>();
+                    for (CompletableFuture<List<TransactionTable>> f : transactions) all.addAll(f.join());
+                    return all;
+                });
+        return contents;
+    }
+
+    private void readMonths(DataFileLoader loader, BiConsumer<TransactionTable, String[]> parseTransaction,
+                            List<CompletableFuture<List<TransactionTable>>> transactions) throws IOException {
+        for (YearMonth m : months) {
+            transactions.add(loader.readChunksAsync(existing(transactionsShard(m)), TransactionTable::new,
+                    parseTransaction));
+        }
+    }
+
+    // Writes the shards with changes (all of them when everything is set), in
+    // parallel, then the manifest; files the manifest no longer names go last.
+    // books is null when the catalogue is kept elsewhere; its shards then go too.
+    public void save(UserRepository users, Function<User, String> userRecord,
+                     BookRepository books, Function<Book, String> bookRecord,
+                     TransactionRepository transactions, boolean everything) throws IOException {
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        saveHashed(writes, "users", users.findAll(), User::getId, User::isDirty, users.findMembershipChanges(),
+                userRecord, everything);
+        if (books != null) {
+            saveHashed(writes, "books", books.findAll(), Book::getBookId, Book::isDirty,
+                    books.findMembershipChanges(), bookRecord, everything);
+        }
+        saveMonths(writes, transactions, everything || transactions.needsFullRewrite());
+        for (CompletableFuture<Void> w : writes) {
+            DataFileLoader.await(w);
+        }
+        writeManifest();
+        deleteUnlisted(books != null);
+    }
+
+    private <T> void saveHashed(List<CompletableFuture<Void>> writes, String kind, Collection<T> all,
+                                Function<T, String> idOf, Predicate<T> isDirty, Set<String> membershipChanges,
+                                Function<T, String> record, boolean everything) {
+        List<List<T>> buckets = new ArrayList<>(shards);
+        boolean[] changed = new boolean[shards];
+        for (int i = 0; i < shards; i++) buckets.add(new ArrayList<>());
+        for (T item : all) {
+            int shard = shardOf(idOf.apply(item), shards);
+            buckets.get(shard).add(item);
+            if (isDirty.test(item)) changed[shard] = true;
+        }
+        for (String id : membershipChanges) changed[shardOf(id, shards)] = true;
+        for (int i = 0; i < shards; i++) {
+            Path path = shard(kind, i);
+            if (everything || changed[i] || !Files.exists(path)) {
+                List<T> rows = buckets.get(i);
+                writes.add(async(() -> AtomicFiles.replace(path, bw -> writeLines(bw, rows, record))));
+            }
+        }
+    }
+
+    // Months with a changed saved row are rewritten from the borrow-date
+    // index; months that only gained rows are appended to.
+    private void saveMonths(List<CompletableFuture<Void>> writes, TransactionRepository transactions,
+                            boolean everything) throws IOException {
+        Map<YearMonth, List<Transaction>> rewrite = new TreeMap<>();
+        Map<YearMonth, List<Transaction>> append = new TreeMap<>();
+        if (everything) {
+            months.clear();
+            for (Transaction t : transactions.findAll()) {
+                rewrite.computeIfAbsent(monthOf(t), m -> new ArrayList<>()).add(t);
+            }
+        } else {
+            Set<YearMonth> changed = new HashSet<>();
+            for (Transaction t : transactions.findChangedSaved()) {
+                changed.add(monthOf(t));
+            }
+            for (Transaction t : transactions.findUnsaved()) {
+                YearMonth m = monthOf(t);
+                if (!changed.contains(m) && months.contains(m) && AtomicFiles.endsWithNewline(transactionsShard(m))) {
+                    append.computeIfAbsent(m, k -> new ArrayList<>()).add(t);
+                } else {
+                    changed.add(m);
+                }
+            }
+            for (YearMonth m : changed) {
+                append.remove(m);
+                rewrite.put(m, transactions.findBorrowedBetween(m.atDay(1), m.atEndOfMonth()));
+            }
+        }
+        rewrite.forEach((m, rows) -> {
+            Path path = transactionsShard(m);
+            writes.add(async(() -> AtomicFiles.replace(path, bw -> writeLines(bw, rows, Transaction::toRecord))));
+        });
+        append.forEach((m, rows) -> {
+            Path path = transactionsShard(m);
+            writes.add(async(() -> AtomicFiles.append(path, bw -> writeLines(bw, rows, Transaction::toRecord))));
+        });
+        months.addAll(rewrite.keySet());
+    }
+
+    // Rows without a borrow date are rejected when the files are read
+    // (TransactionTable.addRecord), so none should get this far
+    private static YearMonth monthOf(Transaction t) throws IOException {
+        LocalDate borrowed = t.getDateBorrowed();
+        if (borrowed == null) throw new IOException("Transaction " + t.getTransactionId() + " has no borrow date");
+        return YearMonth.from(borrowed);
+    }
+
+    private void writeManifest() throws IOException {
+        StringBuilder text = new StringBuilder("# Written by the library; lists the data files in this directory\n");
+        text.append("shards=").append(shards).append('\n');
+        text.append("months=");
+        String sep = "";
+        for (YearMonth m : months) {
+            text.append(sep).append(m);
+            sep = ",";
+        }
+        text.append('\n');
+        AtomicFiles.replace(dir.resolve(MANIFEST), text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Leftovers of an earlier shard count, of months that lost all their rows,
+    // or of books moved out to the catalogue store
+    private void deleteUnlisted(boolean withBooks) throws IOException {
+        Set<Path> listed = new HashSet<>();
+        listed.add(dir.resolve(MANIFEST));
+        for (int i = 0; i < shards; i++) {
+            listed.add(usersShard(i));
+            if (withBooks) listed.add(booksShard(i));
+        }
+        for (YearMonth m : months) listed.add(transactionsShard(m));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.txt")) {
+            for (Path f : files) {
+                if (!listed.contains(f)) Files.delete(f);
+            }
+        }
+    }
+
+    // Removes the whole layout, after the data has been written elsewhere
+    public void delete() throws IOException {
+        Files.deleteIfExists(dir.resolve(MANIFEST));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path f : files) Files.delete(f);
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    private Path usersShard(int i) {
+        return shard("users", i);
+    }
+
+    private Path booksShard(int i) {
+        return shard("books", i);
+    }
+
+    private Path shard(String kind, int i) {
+        return dir.resolve(String.format("%s-%02d.txt", kind, i));
+    }
+
+    private Path transactionsShard(YearMonth m) {
+        return dir.resolve("transactions-" + m + ".txt");
+    }
+
+    private static Path existing(Path path) throws IOException {
+        if (!Files.exists(path)) throw new IOException("Shard " + path + " is listed in the manifest but missing");
+        return path;
+    }
+
+    private static <T> void writeLines(BufferedWriter bw, List<T> rows, Function<T, String> record)
+            throws IOException {
+        for (T row : rows) {
+            bw.write(record.apply(row));
+            bw.newLine();
+        }
+    }
+
+    private interface IOAction {
+        void run() throws IOException;
+    }
+
+    private static CompletableFuture<Void> async(IOAction action) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                action.run();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, ForkJoinPool.commonPool());
+    }
+}
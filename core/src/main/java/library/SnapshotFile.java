@@ -0,0 +1,144 @@
+package library;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Binary snapshot of users, books and transactions. Strings are length-prefixed,
+// dates are epoch days, user and book IDs in transactions are codes into a
+// string dictionary, and a CRC32 of the whole body is appended at the end.
+public class SnapshotFile {
+    private static final int MAGIC = 0x4C494253; // "LIBS"
+    private static final int VERSION = 1;
+
+    public static class Snapshot {
+        public final List<User> users = new ArrayList<>();
+        public final List<Book> books = new ArrayList<>();
+        public final TransactionTable transactions = new TransactionTable();
+        public long lastTransactionId;
+        // Rows left out for having no borrow date, as the text loaders leave them out
+        public int skippedTransactions;
+    }
+
+    public static void write(Path path, Collection<User> users, Collection<Book> books,
+                             Collection<Transaction> transactions, long lastTransactionId) throws IOException {
+        StringDictionary ids = new StringDictionary();
+        for (Transaction t : transactions) {
+            ids.intern(t.getUserId());
+            ids.intern(t.getBookId());
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+
+        out.writeInt(ids.size());
+        for (String id : ids.values()) {
+            out.writeUTF(id);
+        }
+
+        out.writeInt(users.size());
+        for (User u : users) {
+            out.writeUTF(u.getId());
+            out.writeUTF(u.getName());
+            out.writeUTF(u.getPasswordHash());
+            out.writeUTF(u.getRole());
+        }
+
+        out.writeInt(books.size());
+        for (Book b : books) {
+            out.writeUTF(b.getBookId());
+            out.writeUTF(b.getTitle());
+            out.writeUTF(b.getAuthor());
+            out.writeInt(b.getTotalCopies());
+            out.writeInt(b.getAvailableCopies());
+        }
+
+        out.writeInt(transactions.size());
+        for (Transaction t : transactions) {
+            // Canonical IDs (T001, T1000, ...) are stored as their number
+            long n = TransactionIdAllocator.parse(t.getTransactionId());
+            if (n >= 0 && TransactionIdAllocator.format(n).equals(t.getTransactionId())) {
+                out.writeLong(n);
+            } else {
+                out.writeLong(-1);
+                out.writeUTF(t.getTransactionId());
+            }
+            out.writeInt(ids.codeOf(t.getUserId()));
+            out.writeInt(ids.codeOf(t.getBookId()));
+            out.writeInt(TransactionTable.toDay(t.getDateBorrowed()));
+            out.writeInt(TransactionTable.toDay(t.getDateReturned()));
+        }
+        out.writeLong(lastTransactionId);
+        out.flush();
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        out.flush();
+
+        AtomicFiles.replace(path, bytes.toByteArray());
+    }
+
+    public static Snapshot read(Path path) throws IOException {
+        byte[] data = Files.readAllBytes(path);
+        if (data.length < 16) throw new IOException("snapshot is truncated");
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length - 8);
+        if (crc.getValue() != ByteBuffer.wrap(data, data.length - 8, 8).getLong()) {
+            throw new IOException("snapshot checksum mismatch");
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 0, data.length - 8));
+        if (in.readInt() != MAGIC) throw new IOException("not a library snapshot");
+        int version = in.readInt();
+        if (version != VERSION) throw new IOException("unsupported snapshot version " + version);
+
+        String[] ids = new String[in.readInt()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = in.readUTF();
+        }
+
+        Snapshot snap = new Snapshot();
+        int userCount = in.readInt();
+        for (int i = 0; i < userCount; i++) {
+            snap.users.add(new User(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF()));
+        }
+
+        int bookCount = in.readInt();
+        for (int i = 0; i < bookCount; i++) {
+            String id = in.readUTF();
+            String title = in.readUTF();
+            String author = in.readUTF();
+            int total = in.readInt();
+            snap.books.add(new Book(id, title, author, total, in.readInt()));
+        }
+
+        int transactionCount = in.readInt();
+        for (int i = 0; i < transactionCount; i++) {
+            long n = in.readLong();
+            String tid = n >= 0 ? TransactionIdAllocator.format(n) : in.readUTF();
+            String uid = ids[in.readInt()];
+            String bid = ids[in.readInt()];
+            int borrowed = in.readInt();
+            int returned = in.readInt();
+            if (borrowed == TransactionTable.NO_DATE) {
+                snap.skippedTransactions++;
+                continue;
+            }
+            snap.transactions.add(tid, uid, bid, borrowed, returned);
+        }
+        snap.lastTransactionId = in.readLong();
+        return snap;
+    }
+}
@@ -0,0 +1,27 @@
+package library;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.function.BiPredicate;
+
+// Sorted key-value storage on disk, for data that need not fit in the heap
+// (see StoredBookRepository). Keys compare as Strings. A write is
+// visible to reads at once and durable once flush() returns.
+public interface StorageEngine extends Closeable {
+    // The value stored under key, or null
+    String get(String key) throws IOException;
+
+    void put(String key, String value) throws IOException;
+
+    void delete(String key) throws IOException;
+
+    // Entries with a key after afterKey (from the first when null), in key
+    // order, until visitor returns false
+    void scan(String afterKey, BiPredicate<String, String> visitor) throws IOException;
+
+    // How many keys have a value; LsmStorageEngine keeps only an estimate
+    // between compactions
+    long size();
+
+    void flush() throws IOException;
+}
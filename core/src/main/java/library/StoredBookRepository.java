@@ -0,0 +1,204 @@
+package library;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+// The catalogue kept in a StorageEngine (catalogue/, see --move-catalogue)
+// instead of in memory. Each book is stored under its ID as its books.txt
+// line. Additions, edits and removals go straight to the store; copy counts
+// change on the resident Book objects (every book looked up by ID since the
+// last save, so borrows keep acting on one instance) and are written back on
+// save, after which the resident set starts empty again. Searches scan the
+// store, so the search cache matters more here; title and author completion
+// is not available.
+public class StoredBookRepository extends BookRepository {
+    private final StorageEngine store;
+    private final Map<String, Book> resident = new ConcurrentHashMap<>();
+    private final Set<String> membershipChanges = new HashSet<>();
+
+    public StoredBookRepository(StorageEngine store) {
+        this.store = store;
+    }
+
+    public StorageEngine getStore() {
+        return store;
+    }
+
+    @Override
+    public Book findById(String bookId) {
+        Book b = resident.get(bookId);
+        if (b != null) return b;
+        String record = read(bookId);
+        return record == null ? null : resident.computeIfAbsent(bookId, id -> parse(record));
+    }
+
+    @Override
+    public boolean contains(String bookId) {
+        return resident.containsKey(bookId) || read(bookId) != null;
+    }
+
+    @Override
+    public boolean add(Book book) {
+        if (contains(book.getBookId())) return false;
+        write(book);
+        resident.put(book.getBookId(), book);
+        getSearchCache().bookAdded(book);
+        membershipChanges.add(book.getBookId());
+        return true;
+    }
+
+    @Override
+    public void update(Book book) {
+        write(book);
+        if (resident.put(book.getBookId(), book) != book) membershipChanges.add(book.getBookId());
+        getSearchCache().bookChanged(book);
+    }
+
+    @Override
+    public Book remove(String bookId) {
+        getSearchCache().bookRemoved(bookId);
+        Book removed = findById(bookId);
+        if (removed == null) return null;
+        try {
+            store.delete(bookId);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        resident.remove(bookId);
+        membershipChanges.add(bookId);
+        return removed;
+    }
+
+    // Same matches as BookRepository.search, found by one pass over the store
+    @Override
+    public List<Book> search(String keyword) {
+        String query = BookSearchIndex.normalize(keyword);
+        List<String> ids = getSearchCache().get(query);
+        List<Book> result = new ArrayList<>();
+        if (ids != null) {
+            for (String id : ids) {
+                Book b = lookUp(id);
+                if (b != null) result.add(b);
+            }
+            return result;
+        }
+        List<String> found = new ArrayList<>();
+        try {
+            // Matched on the stored fields, so only matches become Book objects
+            store.scan(null, (id, record) -> {
+                String[] parts = record.split(",", -1);
+                if (BookSearchIndex.normalize(parts[1]).contains(query)
+                        || BookSearchIndex.normalize(parts[2]).contains(query)) {
+                    Book b = resident.get(id);
+                    found.add(id);
+                    result.add(b != null ? b : parse(parts));
+                }
+                return true;
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        getSearchCache().put(query, found);
+        return result;
+    }
+
+    @Override
+    public void scan(String afterId, Predicate<Book> visitor) {
+        try {
+            store.scan(afterId, (id, record) -> {
+                Book b = resident.get(id);
+                return visitor.test(b != null ? b : parse(record));
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Reads the whole catalogue into memory: only for saves and full listings
+    @Override
+    public Collection<Book> findAll() {
+        List<Book> all = new ArrayList<>(size());
+        scan(null, all::add);
+        return all;
+    }
+
+    @Override
+    public int size() {
+        return (int) store.size();
+    }
+
+    // Forgets the books in memory; the store keeps its contents
+    @Override
+    public void clear() {
+        resident.clear();
+        getSearchCache().clear();
+        membershipChanges.clear();
+    }
+
+    @Override
+    public boolean hasChanges() {
+        return !membershipChanges.isEmpty() || resident.values().stream().anyMatch(Book::isDirty);
+    }
+
+    @Override
+    public Set<String> findMembershipChanges() {
+        return new HashSet<>(membershipChanges);
+    }
+
+    // Called after a save, with no operation running: the books in memory are
+    // all in the store now, so they are let go
+    @Override
+    public void markClean() {
+        membershipChanges.clear();
+        resident.values().forEach(Book::markClean);
+        resident.clear();
+    }
+
+    // Puts the changed copy counts into the store and makes the store durable
+    public void writeBack() throws IOException {
+        for (Book b : resident.values()) {
+            if (b.isDirty()) store.put(b.getBookId(), b.toRecord());
+        }
+        store.flush();
+    }
+
+    // A book without making it resident (listings and search results)
+    private Book lookUp(String bookId) {
+        Book b = resident.get(bookId);
+        if (b != null) return b;
+        String record = read(bookId);
+        return record == null ? null : parse(record);
+    }
+
+    private String read(String bookId) {
+        try {
+            return store.get(bookId);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(Book book) {
+        try {
+            store.put(book.getBookId(), book.toRecord());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Book parse(String record) {
+        return parse(record.split(",", -1));
+    }
+
+    private static Book parse(String[] parts) {
+        return Book.fromRecord(parts[0], parts[1], parts[2], parts[3]);
+    }
+}
@@ -0,0 +1,46 @@
+package library;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Maps repeated strings (user and book IDs) to dense int codes and back.
+// intern and codeOf must be serialized by the caller; get may be called from
+// any thread for a code it has already seen, since the value array is only
+// ever replaced by a full copy.
+public class StringDictionary {
+    private final Map<String, Integer> codes = new HashMap<>();
+    private volatile String[] values = new String[16];
+    private volatile int size = 0;
+
+    public int intern(String value) {
+        Integer code = codes.get(value);
+        if (code != null) return code;
+        int next = size;
+        if (next == values.length) values = Arrays.copyOf(values, next * 2);
+        values[next] = value;
+        codes.put(value, next);
+        size = next + 1;
+        return next;
+    }
+
+    // Returns the code for value, or -1 if it was never interned.
+    public int codeOf(String value) {
+        Integer code = codes.get(value);
+        return code != null ? code : -1;
+    }
+
+    public String get(int code) {
+        return values[code];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public List<String> values() {
+        return Collections.unmodifiableList(Arrays.asList(values).subList(0, size));
+    }
+}
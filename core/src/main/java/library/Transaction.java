@@ -0,0 +1,91 @@
+package library;
+
+import java.time.LocalDate;
+
+// A view of one row in a TransactionTable; holds no data of its own.
+public class Transaction {
+    private final TransactionTable table;
+    private final int row;
+
+    // A standalone transaction, backed by a table of its own
+    public Transaction(String transactionId, String userId, String bookId, LocalDate dateBorrowed, LocalDate dateReturned) {
+        this.table = new TransactionTable(new StringDictionary(), new StringDictionary(), 1);
+        this.row = table.add(transactionId, userId, bookId,
+                TransactionTable.toDay(dateBorrowed), TransactionTable.toDay(dateReturned));
+    }
+
+    Transaction(TransactionTable table, int row) {
+        this.table = table;
+        this.row = row;
+    }
+
+    // Format: T001,U001,B002,2025-10-14,null  (throws DateTimeParseException on bad dates)
+    public static Transaction fromRecord(String[] parts) {
+        TransactionTable table = new TransactionTable(new StringDictionary(), new StringDictionary(), 1);
+        return table.get(table.addRecord(parts));
+    }
+
+    public String toRecord() {
+        return String.join(",", getTransactionId(), getUserId(), getBookId(),
+                TransactionTable.dayToString(table.borrowedDay(row)),
+                TransactionTable.dayToString(table.returnedDay(row)));
+    }
+
+    public void displayTransaction() {
+        System.out.println(toDisplayString());
+    }
+
+    public String toDisplayString() {
+        return String.format("%s | User: %s | Book: %s | Borrowed: %s | Returned: %s",
+                getTransactionId(),
+                getUserId(),
+                getBookId(),
+                TransactionTable.dayToString(table.borrowedDay(row)),
+                TransactionTable.dayToString(table.returnedDay(row)));
+    }
+
+    public String getTransactionId() {
+        return table.transactionId(row);
+    }
+
+    public String getUserId() {
+        return table.userId(row);
+    }
+
+    public String getBookId() {
+        return table.bookId(row);
+    }
+
+    public LocalDate getDateBorrowed() {
+        return TransactionTable.toDate(table.borrowedDay(row));
+    }
+
+    public LocalDate getDateReturned() {
+        return TransactionTable.toDate(table.returnedDay(row));
+    }
+
+    public boolean isReturned() {
+        return table.returnedDay(row) != TransactionTable.NO_DATE;
+    }
+
+    TransactionTable table() {
+        return table;
+    }
+
+    int row() {
+        return row;
+    }
+
+    // Two views are equal when they show the same row of the same table
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Transaction)) return false;
+        Transaction other = (Transaction) o;
+        return table == other.table && row == other.row;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(table) * 31 + row;
+    }
+}
@@ -0,0 +1,181 @@
+package library;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+// Cold tier of the transaction history: closed loans moved out of memory into
+// immutable, compressed ArchiveSegment files, oldest first.
+public class TransactionArchive {
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".seg";
+
+    private final Path directory;
+    private final List<ArchiveSegment> segments = new CopyOnWriteArrayList<>();
+    private int nextSegment = 1;
+
+    public TransactionArchive(Path directory) {
+        this.directory = directory;
+    }
+
+    public void open() throws IOException {
+        segments.clear();
+        nextSegment = 1;
+        if (!Files.isDirectory(directory)) return;
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            dir.forEach(paths::add);
+        }
+        paths.sort(null); // zero-padded numbers, so name order is age order
+        for (Path p : paths) {
+            segments.add(ArchiveSegment.open(p));
+            nextSegment = Math.max(nextSegment, numberOf(p) + 1);
+        }
+    }
+
+    public synchronized void append(List<Transaction> closed) throws IOException {
+        Files.createDirectories(directory);
+        Path path = directory.resolve(String.format("%s%06d%s", PREFIX, nextSegment, SUFFIX));
+        segments.add(ArchiveSegment.write(path, closed));
+        nextSegment++;
+    }
+
+    public void forEach(Consumer<Transaction> action) throws IOException {
+        for (ArchiveSegment s : segments) {
+            s.forEach(action);
+        }
+    }
+
+    // Visits rows in archive order, starting at row fromRow of segment number
+    // fromSegment (or the first segment after it), until visitor returns false.
+    // Returns {segment, row} of the row it stopped at, or null if the archive ran out.
+    public int[] scan(int fromSegment, int fromRow, Predicate<Transaction> visitor) throws IOException {
+        for (ArchiveSegment s : segments) {
+            int number = numberOf(s.getPath());
+            if (number < fromSegment) continue;
+            int stopped = s.scan(number == fromSegment ? fromRow : 0, visitor);
+            if (stopped >= 0) return new int[]{number, stopped};
+        }
+        return null;
+    }
+
+    public void forEachByUser(String userId, Consumer<Transaction> action) throws IOException {
+        for (ArchiveSegment s : segments) {
+            if (!s.mayContainUser(userId)) continue;
+            s.forEach(t -> {
+                if (t.getUserId().equals(userId)) action.accept(t);
+            });
+        }
+    }
+
+    public void forEachByBook(String bookId, Consumer<Transaction> action) throws IOException {
+        for (ArchiveSegment s : segments) {
+            if (!s.mayContainBook(bookId)) continue;
+            s.forEach(t -> {
+                if (t.getBookId().equals(bookId)) action.accept(t);
+            });
+        }
+    }
+
+    // A loan is returned no earlier than it is borrowed, so segments whose
+    // newest return predates `fromDay` cannot hold a row borrowed in range
+    public void forEachBorrowedBetween(long fromDay, long toDay, Consumer<Transaction> action) throws IOException {
+        for (ArchiveSegment s : segments) {
+            if (s.getMaxReturnedDay() < fromDay) continue;
+            s.forEach(t -> {
+                long day = t.getDateBorrowed().toEpochDay();
+                if (day >= fromDay && day <= toDay) action.accept(t);
+            });
+        }
+    }
+
+    // IDs among candidates that are already archived. Candidates are sorted by
+    // transaction number, so each segment looks only at those inside its
+    // number range, and is read only if one of them was also returned inside
+    // its date range; after a clean compaction that is no segment at all.
+    // Irregular IDs have no number and are checked against segments that hold
+    // such IDs by return date alone.
+    public Set<String> findArchived(List<Transaction> candidates) throws IOException {
+        List<Transaction> numbered = new ArrayList<>();
+        List<Transaction> irregular = new ArrayList<>();
+        Set<String> wanted = new HashSet<>();
+        for (Transaction t : candidates) {
+            if (t.getDateReturned() == null) continue;
+            wanted.add(t.getTransactionId());
+            if (TransactionIdAllocator.parse(t.getTransactionId()) < 0) irregular.add(t);
+            else numbered.add(t);
+        }
+        numbered.sort(Comparator.comparing(Transaction::getTransactionId, TransactionIdAllocator.ORDER));
+        long[] numbers = new long[numbered.size()];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = TransactionIdAllocator.parse(numbered.get(i).getTransactionId());
+        }
+        Set<String> found = new HashSet<>();
+        for (ArchiveSegment s : segments) {
+            boolean overlaps = false;
+            for (int i = firstAtLeast(numbers, s.getMinTransactionNumber());
+                 !overlaps && i < numbers.length && numbers[i] <= s.getMaxTransactionNumber(); i++) {
+                overlaps = returnedWithin(numbered.get(i), s);
+            }
+            if (!overlaps && s.hasIrregularIds()) {
+                overlaps = irregular.stream().anyMatch(t -> returnedWithin(t, s));
+            }
+            if (!overlaps) continue;
+            s.forEach(t -> {
+                if (wanted.contains(t.getTransactionId())) found.add(t.getTransactionId());
+            });
+        }
+        return found;
+    }
+
+    private static boolean returnedWithin(Transaction t, ArchiveSegment s) {
+        long day = t.getDateReturned().toEpochDay();
+        return day >= s.getMinReturnedDay() && day <= s.getMaxReturnedDay();
+    }
+
+    // Index of the first number >= n in a sorted array, or its length
+    private static int firstAtLeast(long[] numbers, long n) {
+        int lo = 0;
+        int hi = numbers.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (numbers[mid] < n) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    public long getMaxTransactionNumber() {
+        long max = 0;
+        for (ArchiveSegment s : segments) {
+            max = Math.max(max, s.getMaxTransactionNumber());
+        }
+        return max;
+    }
+
+    public List<ArchiveSegment> getSegments() {
+        return segments;
+    }
+
+    private static int numberOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    public long size() {
+        long rows = 0;
+        for (ArchiveSegment s : segments) {
+            rows += s.getRowCount();
+        }
+        return rows;
+    }
+}
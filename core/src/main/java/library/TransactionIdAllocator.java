@@ -0,0 +1,121 @@
+package library;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Hands out transaction IDs (T001, T002, ... T1000, ...) from a counter that is
+// seeded once at load time and persisted on save, so allocation is O(1).
+// Bulk callers take IDs in blocks (see Block). IDs stay as wide as their
+// number (a fixed width would no longer match the T001 IDs already stored),
+// so they do not sort as text; everything that orders IDs uses ORDER.
+public class TransactionIdAllocator {
+    private static final char PREFIX = 'T';
+    private static final int MIN_DIGITS = 3;
+
+    // Allocation order: by number, so T999 comes before T1000; IDs not of the
+    // T<digits> form come after all others, in text order
+    public static final Comparator<String> ORDER = Comparator
+            .comparingLong((String id) -> {
+                long n = parse(id);
+                return n < 0 ? Long.MAX_VALUE : n;
+            })
+            .thenComparing(Comparator.naturalOrder());
+
+    private final AtomicLong last = new AtomicLong();
+    // Counts saves; blocks reserved before the last one are given up (see Block)
+    private final AtomicInteger saves = new AtomicInteger();
+
+    public String next() {
+        return format(last.incrementAndGet());
+    }
+
+    // Reserves count consecutive IDs and returns the number of the first one.
+    public long reserve(int count) {
+        if (count <= 0) throw new IllegalArgumentException("count must be positive: " + count);
+        return last.getAndAdd(count) + 1;
+    }
+
+    public Block newBlock(int size) {
+        return new Block(size);
+    }
+
+    // Raises the counter so it never hands out an ID at or below transactionId.
+    public void observe(String transactionId) {
+        long n = parse(transactionId);
+        if (n > 0) observe(n);
+    }
+
+    public void observe(long n) {
+        last.accumulateAndGet(n, Math::max);
+    }
+
+    public long current() {
+        return last.get();
+    }
+
+    public void reset() {
+        last.set(0);
+    }
+
+    public void load(Path path) throws IOException {
+        if (!Files.exists(path)) return;
+        String text = Files.readString(path).trim();
+        if (!text.isEmpty()) observe(Long.parseLong(text));
+    }
+
+    public void save(Path path) throws IOException {
+        AtomicFiles.replace(path, Long.toString(last.get()).getBytes(StandardCharsets.UTF_8));
+        saves.incrementAndGet();
+    }
+
+    public static String format(long n) {
+        String digits = Long.toString(n);
+        StringBuilder sb = new StringBuilder(1 + Math.max(MIN_DIGITS, digits.length())).append(PREFIX);
+        for (int i = digits.length(); i < MIN_DIGITS; i++) sb.append('0');
+        return sb.append(digits).toString();
+    }
+
+    // Returns the number in an ID of the form T<digits>, or -1 for anything else.
+    public static long parse(String transactionId) {
+        int len = transactionId.length();
+        if (len < 2 || len > 19 || transactionId.charAt(0) != PREFIX) return -1;
+        long n = 0;
+        for (int i = 1; i < len; i++) {
+            char c = transactionId.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            n = n * 10 + (c - '0');
+        }
+        return n;
+    }
+
+    // IDs for one bulk caller (e.g. a batch session), reserved size at a time
+    // so the callers do not all contend on the counter. Not thread-safe. The
+    // rest of a block is given up at the next save: replay takes every logged
+    // ID at or below the saved counter to be in the files already, so an ID
+    // handed out after a save must be above it.
+    public final class Block {
+        private final int size;
+        private long next = 0;
+        private long end = 0;
+        private int reservedAt = -1;
+
+        private Block(int size) {
+            if (size <= 0) throw new IllegalArgumentException("size must be positive: " + size);
+            this.size = size;
+        }
+
+        public String next() {
+            if (next == end || reservedAt != saves.get()) {
+                reservedAt = saves.get();
+                next = reserve(size);
+                end = next + size;
+            }
+            return format(next++);
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package library;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+// Safe for concurrent use: every method holds the repository's monitor only
+// for the in-memory update or copy. Lists handed out are snapshots.
+public class TransactionRepository {
+    // Full history in insertion order, plus row indexes kept in step by add/markReturned
+    private TransactionTable table = new TransactionTable();
+    // Rows per user and per book, indexed by the table's dictionary codes
+    private final List<RowList> rowsByUser = new ArrayList<>();
+    private final List<RowList> rowsByBook = new ArrayList<>();
+    private final Map<Long, Integer> openLoans = new HashMap<>();
+    // Rows by borrow day, and unreturned rows ordered by borrow day then row
+    // (packed by dayKey); with a fixed loan period that is due-date order
+    private final NavigableMap<Integer, RowList> rowsByBorrowedDay = new TreeMap<>();
+    private final NavigableSet<Long> openByBorrowedDay = new TreeSet<>();
+    // transactions.txt holds the first savedCount rows; until one of those is
+    // modified, saving only has to append the rest
+    private int savedCount = 0;
+    private boolean savedRowsChanged = false;
+    // Which saved rows changed, for the sharded layout; rowsRemoved means the
+    // row numbers no longer match what was saved, so everything is rewritten
+    private final BitSet changedRows = new BitSet();
+    private boolean rowsRemoved = false;
+    // Row numbers only ever grow, except when rows are removed; this counts removals
+    private int generation = 0;
+
+    public synchronized Transaction add(Transaction t) {
+        return table.get(index(table.addRow(t.table(), t.row())));
+    }
+
+    public synchronized Transaction add(String transactionId, String userId, String bookId,
+                                        LocalDate dateBorrowed, LocalDate dateReturned) {
+        int row = table.add(transactionId, userId, bookId,
+                TransactionTable.toDay(dateBorrowed), TransactionTable.toDay(dateReturned));
+        return table.get(index(row));
+    }
+
+    // Appends every row of a table loaded elsewhere (e.g. one parsed chunk)
+    public synchronized void addAll(TransactionTable rows) {
+        for (int i = 0; i < rows.size(); i++) {
+            index(table.addRow(rows, i));
+        }
+    }
+
+    // False, changing nothing, when t is no longer an open loan in the current
+    // table (already returned, or the table was rebuilt since t was found)
+    public synchronized boolean markReturned(Transaction t, LocalDate date) {
+        if (t.table() != table) return false;
+        int row = t.row();
+        if (table.returnedDay(row) != TransactionTable.NO_DATE) return false;
+        // Rows below savedCount are already on disk
+        if (row < savedCount) {
+            savedRowsChanged = true;
+            changedRows.set(row);
+        }
+        table.setReturnedDay(row, TransactionTable.toDay(date));
+        openLoans.remove(loanKey(table.userCode(row), table.bookCode(row)), row);
+        openByBorrowedDay.remove(dayKey(table.borrowedDay(row), row));
+        return true;
+    }
+
+    // Undoes markReturned for a return that could not be logged
+    public synchronized void reopen(Transaction t) {
+        if (t.table() != table) return;
+        int row = t.row();
+        table.setReturnedDay(row, TransactionTable.NO_DATE);
+        openLoans.put(loanKey(table.userCode(row), table.bookCode(row)), row);
+        openByBorrowedDay.add(dayKey(table.borrowedDay(row), row));
+    }
+
+    // Removes rows that have moved to the archive
+    public synchronized void removeAll(Collection<Transaction> archived) {
+        BitSet gone = new BitSet(table.size());
+        for (Transaction t : archived) {
+            if (t.table() == table) gone.set(t.row());
+        }
+        TransactionTable kept = new TransactionTable(table.getUserIds(), table.getBookIds(),
+                table.size() - gone.cardinality());
+        for (int i = 0; i < table.size(); i++) {
+            if (!gone.get(i)) kept.addRow(table, i);
+        }
+        // Views handed out earlier keep reading the old table
+        table = kept;
+        generation++;
+        reindex();
+        savedCount = 0;
+        savedRowsChanged = true;
+        rowsRemoved = true;
+    }
+
+    public synchronized List<Transaction> findReturnedBefore(LocalDate cutoff) {
+        int cutoffDay = TransactionTable.toDay(cutoff);
+        List<Transaction> result = new ArrayList<>();
+        for (int i = 0; i < table.size(); i++) {
+            int day = table.returnedDay(i);
+            if (day != TransactionTable.NO_DATE && day < cutoffDay) result.add(table.get(i));
+        }
+        return result;
+    }
+
+    // Rows borrowed on any day from `from` to `to`, both inclusive, oldest first
+    public synchronized List<Transaction> findBorrowedBetween(LocalDate from, LocalDate to) {
+        List<Transaction> result = new ArrayList<>();
+        int fromDay = TransactionTable.toDay(from);
+        int toDay = TransactionTable.toDay(to);
+        if (fromDay > toDay) return result;
+        for (RowList rows : rowsByBorrowedDay.subMap(fromDay, true, toDay, true).values()) {
+            for (int i = 0; i < rows.size; i++) {
+                result.add(table.get(rows.rows[i]));
+            }
+        }
+        return result;
+    }
+
+    // Unreturned rows borrowed before cutoff, longest outstanding first
+    public synchronized List<Transaction> findOpenBorrowedBefore(LocalDate cutoff) {
+        List<Transaction> result = new ArrayList<>();
+        for (long key : openByBorrowedDay.headSet(dayKey(TransactionTable.toDay(cutoff), 0), false)) {
+            result.add(table.get((int) key));
+        }
+        return result;
+    }
+
+    public synchronized Transaction findOpenLoan(String userId, String bookId) {
+        int user = table.getUserIds().codeOf(userId);
+        int book = table.getBookIds().codeOf(bookId);
+        if (user < 0 || book < 0) return null;
+        Integer row = openLoans.get(loanKey(user, book));
+        return row != null ? table.get(row) : null;
+    }
+
+    public synchronized List<Transaction> findByUser(String userId) {
+        return views(rowsByUser, table.getUserIds().codeOf(userId));
+    }
+
+    public synchronized List<Transaction> findByBook(String bookId) {
+        return views(rowsByBook, table.getBookIds().codeOf(bookId));
+    }
+
+    public synchronized Collection<Transaction> findOpenLoans() {
+        List<Transaction> result = new ArrayList<>(openLoans.size());
+        for (int row : openLoans.values()) {
+            result.add(table.get(row));
+        }
+        return result;
+    }
+
+    public synchronized int openLoanCount() {
+        return openLoans.size();
+    }
+
+    public synchronized List<Transaction> findAll() {
+        return views(0, table.size());
+    }
+
+    // Walks the rows present when called, in order, without holding the monitor
+    public void forEach(Consumer<Transaction> action) {
+        TransactionTable rows;
+        int count;
+        synchronized (this) {
+            rows = table;
+            count = table.size();
+        }
+        for (int i = 0; i < count; i++) {
+            action.accept(rows.get(i));
+        }
+    }
+
+    // The live table, for bulk readers that take their own snapshot of size()
+    synchronized TransactionTable table() {
+        return table;
+    }
+
+    public synchronized int generation() {
+        return generation;
+    }
+
+    // Visits rows from fromRow on, in insertion order and without holding the
+    // monitor, until visitor returns false. Returns the row it stopped at
+    // (not consumed), or -1 when the rows ran out. Row numbers are only
+    // meaningful within one generation.
+    public int scan(int expectedGeneration, int fromRow, Predicate<Transaction> visitor) {
+        TransactionTable rows;
+        int count;
+        synchronized (this) {
+            if (expectedGeneration != generation) {
+                throw new IllegalStateException("The transaction list has changed; start the listing again.");
+            }
+            rows = table;
+            count = table.size();
+        }
+        for (int i = Math.max(0, fromRow); i < count; i++) {
+            if (!visitor.test(rows.get(i))) return i;
+        }
+        return -1;
+    }
+
+    public synchronized int size() {
+        return table.size();
+    }
+
+    public synchronized void clear() {
+        table = new TransactionTable();
+        generation++;
+        rowsByUser.clear();
+        rowsByBook.clear();
+        openLoans.clear();
+        rowsByBorrowedDay.clear();
+        openByBorrowedDay.clear();
+        savedCount = 0;
+        savedRowsChanged = true;
+        rowsRemoved = true;
+    }
+
+    public synchronized boolean hasChanges() {
+        return savedRowsChanged || savedCount < table.size();
+    }
+
+    // True when rows already on disk changed and the file must be rewritten
+    public synchronized boolean needsRewrite() {
+        return savedRowsChanged;
+    }
+
+    // True when rows were removed (or all cleared) since the last save
+    public synchronized boolean needsFullRewrite() {
+        return rowsRemoved;
+    }
+
+    public synchronized List<Transaction> findUnsaved() {
+        return views(savedCount, table.size());
+    }
+
+    // Saved rows modified since the last save (their loans were returned)
+    public synchronized List<Transaction> findChangedSaved() {
+        List<Transaction> result = new ArrayList<>(changedRows.cardinality());
+        for (int row = changedRows.nextSetBit(0); row >= 0; row = changedRows.nextSetBit(row + 1)) {
+            result.add(table.get(row));
+        }
+        return result;
+    }
+
+    public synchronized void markSaved() {
+        savedCount = table.size();
+        savedRowsChanged = false;
+        changedRows.clear();
+        rowsRemoved = false;
+    }
+
+    private int index(int row) {
+        int user = table.userCode(row);
+        int book = table.bookCode(row);
+        rowList(rowsByUser, user).add(row);
+        rowList(rowsByBook, book).add(row);
+        int day = table.borrowedDay(row);
+        rowsByBorrowedDay.computeIfAbsent(day, d -> new RowList()).add(row);
+        if (table.returnedDay(row) == TransactionTable.NO_DATE) {
+            openLoans.put(loanKey(user, book), row);
+            openByBorrowedDay.add(dayKey(day, row));
+        }
+        return row;
+    }
+
+    private void reindex() {
+        rowsByUser.clear();
+        rowsByBook.clear();
+        openLoans.clear();
+        rowsByBorrowedDay.clear();
+        openByBorrowedDay.clear();
+        for (int i = 0; i < table.size(); i++) {
+            index(i);
+        }
+    }
+
+    private List<Transaction> views(int from, int to) {
+        List<Transaction> result = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            result.add(table.get(i));
+        }
+        return result;
+    }
+
+    private List<Transaction> views(List<RowList> index, int code) {
+        if (code < 0 || code >= index.size()) return new ArrayList<>();
+        RowList rows = index.get(code);
+        List<Transaction> result = new ArrayList<>(rows.size);
+        for (int i = 0; i < rows.size; i++) {
+            result.add(table.get(rows.rows[i]));
+        }
+        return result;
+    }
+
+    private static RowList rowList(List<RowList> index, int code) {
+        while (index.size() <= code) index.add(new RowList());
+        return index.get(code);
+    }
+
+    private static long loanKey(int userCode, int bookCode) {
+        return ((long) userCode << 32) | (bookCode & 0xFFFFFFFFL);
+    }
+
+    // Orders by day, then row; the row is the low half
+    private static long dayKey(int day, int row) {
+        return ((long) day << 32) | (row & 0xFFFFFFFFL);
+    }
+
+    // Growable list of row numbers
+    private static final class RowList {
+        int[] rows = new int[4];
+        int size;
+
+        void add(int row) {
+            if (size == rows.length) rows = Arrays.copyOf(rows, size * 2);
+            rows[size++] = row;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package library;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Column-oriented transaction rows: user and book IDs as dictionary codes,
+// dates as epoch days and canonical transaction IDs (T001, T1000, ...) as
+// their number, each column in its own growable primitive array. Transaction
+// objects are views onto a row.
+//
+// One thread appends (callers serialize writes); other threads may read rows
+// they obtained after the append. Column arrays are replaced, never resized
+// in place, and the references are volatile, so a reader sees either the old
+// array or a fully copied new one. The returned-date column is the only one
+// that changes after an append, and it is read and written under the monitor.
+public class TransactionTable {
+    public static final int NO_DATE = Integer.MIN_VALUE;
+    private static final long IRREGULAR_ID = -1;
+
+    private final StringDictionary userIds;
+    private final StringDictionary bookIds;
+    private volatile long[] numbers;
+    private volatile int[] users;
+    private volatile int[] books;
+    private volatile int[] borrowed;
+    private volatile int[] returned;
+    // IDs that do not round-trip through TransactionIdAllocator.format
+    private final Map<Integer, String> irregularIds = new ConcurrentHashMap<>();
+    private volatile int size;
+
+    public TransactionTable() {
+        this(new StringDictionary(), new StringDictionary(), 16);
+    }
+
+    public TransactionTable(StringDictionary userIds, StringDictionary bookIds, int capacity) {
+        this.userIds = userIds;
+        this.bookIds = bookIds;
+        capacity = Math.max(capacity, 1);
+        numbers = new long[capacity];
+        users = new int[capacity];
+        books = new int[capacity];
+        borrowed = new int[capacity];
+        returned = new int[capacity];
+    }
+
+    public int add(String transactionId, String userId, String bookId, int borrowedDay, int returnedDay) {
+        return append(transactionId, userIds.intern(userId), bookIds.intern(bookId), borrowedDay, returnedDay);
+    }
+
+    // Format: T001,U001,B002,2025-10-14,null  (throws DateTimeParseException on
+    // bad dates, and on a missing borrow date: only the return date may be null)
+    public int addRecord(String[] parts) {
+        int borrowed = parseDay(parts[3]);
+        if (borrowed == NO_DATE) throw new DateTimeParseException("No borrow date", parts[3], 0);
+        return add(parts[0], parts[1], parts[2], borrowed, parseDay(parts[4]));
+    }
+
+    // Copies a row from another table, translating its dictionary codes
+    public int addRow(TransactionTable from, int row) {
+        int user = from.users[row];
+        int book = from.books[row];
+        if (from.userIds != userIds) user = userIds.intern(from.userIds.get(user));
+        if (from.bookIds != bookIds) book = bookIds.intern(from.bookIds.get(book));
+        return append(from.transactionId(row), user, book, from.borrowed[row], from.returnedDay(row));
+    }
+
+    private int append(String transactionId, int user, int book, int borrowedDay, int returnedDay) {
+        int row = size;
+        if (row == numbers.length) grow();
+        long n = TransactionIdAllocator.parse(transactionId);
+        if (n < 0 || !isCanonical(transactionId)) {
+            n = IRREGULAR_ID;
+            irregularIds.put(row, transactionId);
+        }
+        numbers[row] = n;
+        users[row] = user;
+        books[row] = book;
+        borrowed[row] = borrowedDay;
+        synchronized (this) {
+            returned[row] = returnedDay;
+        }
+        size = row + 1;
+        return row;
+    }
+
+    private synchronized void grow() {
+        int capacity = numbers.length * 2;
+        numbers = Arrays.copyOf(numbers, capacity);
+        users = Arrays.copyOf(users, capacity);
+        books = Arrays.copyOf(books, capacity);
+        borrowed = Arrays.copyOf(borrowed, capacity);
+        returned = Arrays.copyOf(returned, capacity);
+    }
+
+    public Transaction get(int row) {
+        return new Transaction(this, row);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public StringDictionary getUserIds() {
+        return userIds;
+    }
+
+    public StringDictionary getBookIds() {
+        return bookIds;
+    }
+
+    public String transactionId(int row) {
+        long n = numbers[row];
+        return n != IRREGULAR_ID ? TransactionIdAllocator.format(n) : irregularIds.get(row);
+    }
+
+    // The ID's number, or -1 when it is not of the form T<digits>
+    public long transactionNumber(int row) {
+        long n = numbers[row];
+        return n != IRREGULAR_ID ? n : TransactionIdAllocator.parse(irregularIds.get(row));
+    }
+
+    public int userCode(int row) {
+        return users[row];
+    }
+
+    public int bookCode(int row) {
+        return books[row];
+    }
+
+    public String userId(int row) {
+        return userIds.get(users[row]);
+    }
+
+    public String bookId(int row) {
+        return bookIds.get(books[row]);
+    }
+
+    public int borrowedDay(int row) {
+        return borrowed[row];
+    }
+
+    public synchronized int returnedDay(int row) {
+        return returned[row];
+    }
+
+    public synchronized void setReturnedDay(int row, int day) {
+        returned[row] = day;
+    }
+
+    public static int toDay(LocalDate date) {
+        return date != null ? (int) date.toEpochDay() : NO_DATE;
+    }
+
+    public static LocalDate toDate(int day) {
+        return day != NO_DATE ? LocalDate.ofEpochDay(day) : null;
+    }
+
+    public static String dayToString(int day) {
+        return day != NO_DATE ? LocalDate.ofEpochDay(day).toString() : "null";
+    }
+
+    private static int parseDay(String field) {
+        return "null".equals(field) ? NO_DATE : (int) LocalDate.parse(field).toEpochDay();
+    }
+
+    // True for exactly the strings TransactionIdAllocator.format produces: at
+    // least three digits, and no leading zero beyond the padding
+    private static boolean isCanonical(String transactionId) {
+        int digits = transactionId.length() - 1;
+        return digits == 3 || (digits > 3 && transactionId.charAt(1) != '0');
+    }
+}
@@ -0,0 +1,75 @@
+package library;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class User extends Person {
+    // A PasswordHasher hash, or the plaintext password of a user from before
+    // hashing until their next login or --migrate-passwords
+    private volatile String passwordHash;
+    private String role; 
+    private List<String> borrowedBooks;
+    // Set when a field stored in users.txt changes; borrowedBooks is derived
+    private volatile boolean dirty = false;
+
+    public User(String id, String name, String passwordHash, String role) {
+        super(id, name);
+        this.passwordHash = passwordHash;
+        this.role = role;
+        // At most a handful of entries, read far more often than written
+        this.borrowedBooks = new CopyOnWriteArrayList<>();
+    }
+
+    @Override
+    public void displayInfo() {
+        System.out.println(toDisplayString());
+    }
+
+    @Override
+    public String toDisplayString() {
+        return "UserID: " + id + " | Name: " + name + " | Role: " + role + " | Borrowed: " + borrowedBooks;
+    }
+
+    public String getPasswordHash() {
+        return passwordHash;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public List<String> getBorrowedBooks() {
+        return borrowedBooks;
+    }
+
+    public void borrowBook(String bookId) {
+        borrowedBooks.add(bookId);
+    }
+
+    public void returnBook(String bookId) {
+        borrowedBooks.remove(bookId);
+    }
+
+    public void setName(String name) {
+        this.name = name;
+        dirty = true;
+    }
+
+    public void setPasswordHash(String passwordHash) {
+        this.passwordHash = passwordHash;
+        dirty = true;
+    }
+
+    public void setRole(String role) {
+        this.role = role;
+        dirty = true;
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    public void markClean() {
+        dirty = false;
+    }
+}
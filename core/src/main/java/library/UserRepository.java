@@ -0,0 +1,118 @@
+package library;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+public class UserRepository {
+    // Keyed by user ID. Insertion order is kept so listings follow users.txt.
+    private final Map<String, User> usersById = new LinkedHashMap<>();
+    // Case-folded name -> users with that name (names need not be unique),
+    // and the key each user is filed under, so a rename can move it
+    private final Map<String, List<User>> usersByName = new HashMap<>();
+    private final Map<String, String> nameKeys = new HashMap<>();
+    // Set when users are added or removed, with their IDs for the sharded
+    // layout; field changes are tracked per user
+    private boolean membershipChanged = false;
+    private final Set<String> membershipChanges = new HashSet<>();
+
+    public User findById(String userId) {
+        return usersById.get(userId);
+    }
+
+    public boolean contains(String userId) {
+        return usersById.containsKey(userId);
+    }
+
+    public boolean add(User user) {
+        if (usersById.containsKey(user.getId())) return false;
+        usersById.put(user.getId(), user);
+        indexName(user);
+        membershipChanged = true;
+        membershipChanges.add(user.getId());
+        return true;
+    }
+
+    public void update(User user) {
+        User old = usersById.put(user.getId(), user);
+        if (old != user) {
+            membershipChanged = true;
+            membershipChanges.add(user.getId());
+        }
+        if (old != null) unindexName(old);
+        indexName(user);
+    }
+
+    public User remove(String userId) {
+        User removed = usersById.remove(userId);
+        if (removed != null) {
+            unindexName(removed);
+            membershipChanged = true;
+            membershipChanges.add(userId);
+        }
+        return removed;
+    }
+
+    // Users whose name equals name ignoring case
+    public List<User> findByName(String name) {
+        List<User> matches = usersByName.get(foldName(name));
+        return matches == null ? List.of() : List.copyOf(matches);
+    }
+
+    public static String foldName(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    public Collection<User> findAll() {
+        return Collections.unmodifiableCollection(usersById.values());
+    }
+
+    public int size() {
+        return usersById.size();
+    }
+
+    public void clear() {
+        usersById.clear();
+        usersByName.clear();
+        nameKeys.clear();
+        membershipChanged = true;
+        membershipChanges.clear();
+    }
+
+    public boolean hasChanges() {
+        return membershipChanged || usersById.values().stream().anyMatch(User::isDirty);
+    }
+
+    // IDs of users added, replaced or removed since markClean (clear() is
+    // always followed by a reload and markClean, so it forgets them)
+    public Set<String> findMembershipChanges() {
+        return new HashSet<>(membershipChanges);
+    }
+
+    public void markClean() {
+        membershipChanged = false;
+        membershipChanges.clear();
+        usersById.values().forEach(User::markClean);
+    }
+
+    private void indexName(User user) {
+        String key = foldName(user.getName());
+        nameKeys.put(user.getId(), key);
+        usersByName.computeIfAbsent(key, k -> new ArrayList<>(1)).add(user);
+    }
+
+    private void unindexName(User user) {
+        String key = nameKeys.remove(user.getId());
+        if (key == null) return;
+        List<User> named = usersByName.get(key);
+        named.removeIf(u -> u.getId().equals(user.getId()));
+        if (named.isEmpty()) usersByName.remove(key);
+    }
+}
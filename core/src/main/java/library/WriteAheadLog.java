@@ -0,0 +1,198 @@
+package library;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+// Append-only log of every mutation since the last save. append returns once
+// its record is on disk. Records are fsynced in groups: the first caller to
+// find its record unwritten writes and fsyncs everything pending, and records
+// appended while that fsync runs go out together in the next one. If a
+// group cannot be written, every append in it fails, and what part of it
+// reached the file is cut off again.
+public class WriteAheadLog implements Closeable {
+    private final FileChannel channel;
+    private final Object flushLock = new Object();
+    private StringBuilder pending = new StringBuilder();
+    // Records appended and records whose write has finished, counted since opening
+    private long appended = 0;
+    private long durable = 0;
+    private boolean flushing = false;
+    // Groups whose write failed, by first and last record; their appends fail
+    private final NavigableMap<Long, Long> lost = new TreeMap<>();
+
+    public WriteAheadLog(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // A torn record at the tail would swallow the first record appended after it
+        channel.truncate(lastLineEnd(channel));
+        channel.position(channel.size());
+    }
+
+    public void append(String... fields) throws IOException {
+        String record = String.join(",", fields);
+        long seq;
+        synchronized (this) {
+            // Format: <crc32 hex>|BORROW,T004,U001,B002,2025-10-20
+            pending.append(Long.toHexString(checksum(record))).append('|').append(record).append('\n');
+            seq = ++appended;
+        }
+        awaitDurable(seq);
+        synchronized (this) {
+            Map.Entry<Long, Long> group = lost.floorEntry(seq);
+            if (group != null && seq <= group.getValue()) throw new IOException("The log could not be written");
+        }
+    }
+
+    // Writes and fsyncs everything appended so far
+    public void flush() throws IOException {
+        long seq;
+        synchronized (this) {
+            seq = appended;
+        }
+        awaitDurable(seq);
+    }
+
+    private void awaitDurable(long seq) throws IOException {
+        String batch;
+        long first;
+        long last;
+        synchronized (this) {
+            while (durable < seq && flushing) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted waiting for the log to be written", e);
+                }
+            }
+            if (durable >= seq) return;
+            flushing = true;
+            batch = pending.toString();
+            pending = new StringBuilder();
+            first = durable + 1;
+            last = appended;
+        }
+        boolean ok = false;
+        try {
+            synchronized (flushLock) {
+                long start = channel.position();
+                try {
+                    ByteBuffer buf = ByteBuffer.wrap(batch.getBytes(StandardCharsets.UTF_8));
+                    while (buf.hasRemaining()) channel.write(buf);
+                    channel.force(false);
+                } catch (IOException e) {
+                    cutBack(start);
+                    throw e;
+                }
+            }
+            ok = true;
+        } finally {
+            synchronized (this) {
+                flushing = false;
+                if (!ok) lost.put(first, last);
+                durable = Math.max(durable, last);
+                notifyAll();
+            }
+        }
+    }
+
+    // A partial record would swallow the next one written after it
+    private void cutBack(long size) {
+        try {
+            channel.truncate(size);
+            channel.position(size);
+        } catch (IOException e) {
+            // Dropped as a torn tail the next time the log is opened
+        }
+    }
+
+    // Called once the data files hold everything the log describes.
+    public void truncate() throws IOException {
+        synchronized (flushLock) {
+            synchronized (this) {
+                pending = new StringBuilder();
+                durable = appended;
+                notifyAll();
+            }
+            channel.truncate(0);
+            channel.force(true);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    public static List<String[]> readRecords(Path path) throws IOException {
+        List<String[]> records = new ArrayList<>();
+        if (!Files.exists(path)) return records;
+        byte[] data = Files.readAllBytes(path);
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+        // A record without its newline was torn by a crash and is dropped
+        for (int start = 0, end; (end = indexOf(data, (byte) '\n', start)) >= 0; start = end + 1) {
+            String line;
+            try {
+                line = decoder.decode(ByteBuffer.wrap(data, start, end - start)).toString();
+            } catch (CharacterCodingException e) {
+                continue;
+            }
+            int sep = line.indexOf('|');
+            if (sep <= 0) continue;
+            String record = line.substring(sep + 1);
+            // A record damaged on disk fails its checksum and is dropped
+            if (!line.substring(0, sep).equals(Long.toHexString(checksum(record)))) continue;
+            records.add(record.split(",", -1));
+        }
+        return records;
+    }
+
+    private static int indexOf(byte[] data, byte b, int from) {
+        for (int i = from; i < data.length; i++) {
+            if (data[i] == b) return i;
+        }
+        return -1;
+    }
+
+    // Length of the file up to and including its last newline
+    private static long lastLineEnd(FileChannel channel) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        long end = channel.size();
+        while (end > 0) {
+            int n = (int) Math.min(buf.capacity(), end);
+            buf.clear().limit(n);
+            long from = end - n;
+            while (buf.hasRemaining()) {
+                if (channel.read(buf, from + buf.position()) < 0) break;
+            }
+            for (int i = buf.position() - 1; i >= 0; i--) {
+                if (buf.get(i) == '\n') return from + i + 1;
+            }
+            end = from;
+        }
+        return 0;
+    }
+
+    private static long checksum(String record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,94 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BookSearchIndexTest {
+    private static final String[] WORDS = {"the", "great", "gatsby", "Dune", "a", "an", "ant", "tale", "of",
+            "two", "cities", "war", "and", "peace", "X", "o'brien", "ÉCOLE", "tt", "attt"};
+
+    @Test
+    void matchesAScanWithContains() {
+        Random random = new Random(42);
+        Map<String, Book> books = new TreeMap<>();
+        BookSearchIndex index = new BookSearchIndex();
+        for (int i = 0; i < 300; i++) {
+            Book b = new Book(String.format("B%03d", i), phrase(random), phrase(random), true);
+            books.put(b.getBookId(), b);
+            index.add(b);
+        }
+        List<String> queries = new ArrayList<>(List.of("", " ", "a", "T", "tt", "ttt", "the great", "at gat",
+                "e g", "s of t", "o'b", "école", "zzz", "and peace", "  dune  "));
+        for (int i = 0; i < 500; i++) {
+            // Pieces of real titles and authors, across word boundaries too
+            Book b = books.get(String.format("B%03d", random.nextInt(books.size())));
+            String text = random.nextBoolean() ? b.getTitle() : b.getAuthor();
+            int from = random.nextInt(text.length());
+            int to = from + 1 + random.nextInt(Math.min(12, text.length() - from));
+            String query = text.substring(from, to);
+            queries.add(random.nextBoolean() ? query.toUpperCase(Locale.ROOT) : query);
+        }
+        for (String query : queries) {
+            assertEquals(scan(books, query), index.search(query), "query '" + query + "'");
+        }
+    }
+
+    @Test
+    void followsEditsAndRemovals() {
+        Random random = new Random(7);
+        Map<String, Book> books = new TreeMap<>();
+        BookSearchIndex index = new BookSearchIndex();
+        for (int i = 0; i < 100; i++) {
+            Book b = new Book(String.format("B%03d", i), phrase(random), phrase(random), true);
+            books.put(b.getBookId(), b);
+            index.add(b);
+        }
+        for (int i = 0; i < 200; i++) {
+            String id = String.format("B%03d", random.nextInt(100));
+            if (random.nextInt(3) == 0) {
+                books.remove(id);
+                index.remove(id);
+            } else {
+                Book b = new Book(id, phrase(random), phrase(random), true);
+                books.put(id, b);
+                index.add(b);
+            }
+        }
+        for (String word : WORDS) {
+            String query = word.substring(0, Math.min(3, word.length()));
+            assertEquals(scan(books, query), index.search(query), "query '" + query + "'");
+            assertEquals(scan(books, word), index.search(word), "query '" + word + "'");
+        }
+    }
+
+    // What searchBooks did before the index: contains() on the lower-cased fields
+    private static List<String> scan(Map<String, Book> books, String query) {
+        String key = query.trim().toLowerCase(Locale.ROOT);
+        List<String> result = new ArrayList<>();
+        for (Book b : books.values()) {
+            if (b.getTitle().toLowerCase(Locale.ROOT).contains(key)
+                    || b.getAuthor().toLowerCase(Locale.ROOT).contains(key)) {
+                result.add(b.getBookId());
+            }
+        }
+        return result;
+    }
+
+    private static String phrase(Random random) {
+        StringBuilder text = new StringBuilder();
+        int words = 1 + random.nextInt(4);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) text.append(' ');
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+}
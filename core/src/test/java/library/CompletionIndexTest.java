@@ -0,0 +1,151 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompletionIndexTest {
+    // "of" is too short and "the" a stop word, so neither is a term on its own
+    private static final String[] WORDS = {"dune", "dunes", "duel", "messiah", "herbert", "hebert", "war",
+            "ward", "peace", "piece", "tolstoy", "of", "the", "children", "chapterhouse", "fitzgerald"};
+    private static final String[] QUERIES = {"", "d", "du", "dun", "dune m", "he", "her", "hreb", "wa", "pie",
+            "pease", "tolstoi", "chil", "fitzj", "messaih", "x", "duen", "the"};
+
+    @Test
+    void completionsMatchAScanOfTheTerms() {
+        Random random = new Random(17);
+        Map<String, Book> books = new TreeMap<>();
+        Map<String, Long> loans = new HashMap<>();
+        CompletionIndex index = new CompletionIndex();
+        for (int step = 0; step < 1500; step++) {
+            String id = String.format("B%02d", random.nextInt(40));
+            int action = random.nextInt(10);
+            if (action < 3) {
+                Book b = new Book(id, phrase(random), phrase(random), true);
+                books.put(id, b);
+                index.add(b);
+            } else if (action == 3) {
+                books.remove(id);
+                index.remove(id);
+            } else if (action < 8) {
+                loans.merge(id, 1L, Long::sum);
+                index.recordLoan(id);
+            } else {
+                String query = QUERIES[random.nextInt(QUERIES.length)];
+                int k = 1 + random.nextInt(6);
+                Map<String, Long> terms = terms(books, loans);
+                checkExact(terms, query, k, index.complete(query, k));
+                checkFuzzy(terms, query, k, 1, index.completeFuzzy(query, k, 1));
+                checkFuzzy(terms, query, k, 2, index.completeFuzzy(query, k, 2));
+            }
+        }
+        assertEquals(terms(books, loans).size(), index.termCount());
+    }
+
+    // The k best by loans among the terms starting with the query; ties may
+    // come in any order, so the loans are compared, and each term checked
+    private static void checkExact(Map<String, Long> terms, String query, int k,
+                                   List<CompletionIndex.Suggestion> found) {
+        String q = BookSearchIndex.normalize(query);
+        List<Long> expected = new ArrayList<>();
+        for (Map.Entry<String, Long> e : terms.entrySet()) {
+            if (e.getKey().startsWith(q)) expected.add(e.getValue());
+        }
+        expected.sort((a, b) -> Long.compare(b, a));
+        List<Long> actual = new ArrayList<>();
+        Set<String> texts = new HashSet<>();
+        for (CompletionIndex.Suggestion s : found) {
+            String key = BookSearchIndex.normalize(s.getText());
+            assertTrue(key.startsWith(q), key + " for '" + query + "'");
+            assertEquals(terms.get(key), s.getLoans(), key);
+            assertEquals(0, s.getEdits());
+            assertTrue(texts.add(key), "twice: " + key);
+            actual.add(s.getLoans());
+        }
+        assertEquals(expected.subList(0, Math.min(k, expected.size())), actual, "'" + query + "'");
+    }
+
+    // Fewest edits from the query to any prefix of the term, then most loans
+    private static void checkFuzzy(Map<String, Long> terms, String query, int k, int maxEdits,
+                                   List<CompletionIndex.Suggestion> found) {
+        String q = BookSearchIndex.normalize(query);
+        List<long[]> expected = new ArrayList<>();
+        for (Map.Entry<String, Long> e : terms.entrySet()) {
+            int edits = prefixDistance(q, e.getKey());
+            if (edits <= maxEdits) expected.add(new long[]{edits, e.getValue()});
+        }
+        expected.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(b[1], a[1]));
+        List<String> expectedPairs = new ArrayList<>();
+        for (long[] pair : expected.subList(0, Math.min(k, expected.size()))) {
+            expectedPairs.add(pair[0] + "/" + pair[1]);
+        }
+        List<String> actualPairs = new ArrayList<>();
+        Set<String> texts = new HashSet<>();
+        for (CompletionIndex.Suggestion s : found) {
+            String key = BookSearchIndex.normalize(s.getText());
+            assertEquals(prefixDistance(q, key), s.getEdits(), key + " for '" + query + "'");
+            assertEquals(terms.get(key), s.getLoans(), key);
+            assertTrue(texts.add(key), "twice: " + key);
+            actualPairs.add(s.getEdits() + "/" + s.getLoans());
+        }
+        assertEquals(expectedPairs, actualPairs, "'" + query + "' within " + maxEdits);
+    }
+
+    // Plain Levenshtein distance from q to the closest prefix of term
+    private static int prefixDistance(String q, String term) {
+        int[] row = new int[q.length() + 1];
+        for (int i = 0; i <= q.length(); i++) row[i] = i;
+        int best = row[q.length()];
+        for (int j = 1; j <= term.length(); j++) {
+            int[] next = new int[q.length() + 1];
+            next[0] = j;
+            for (int i = 1; i <= q.length(); i++) {
+                int cost = q.charAt(i - 1) == term.charAt(j - 1) ? 0 : 1;
+                next[i] = Math.min(Math.min(next[i - 1] + 1, row[i] + 1), row[i - 1] + cost);
+            }
+            row = next;
+            best = Math.min(best, row[q.length()]);
+        }
+        return best;
+    }
+
+    // Normalized term -> loans of the books that have it: each whole title and
+    // author, and each word in them but the short and stop words
+    private static Map<String, Long> terms(Map<String, Book> books, Map<String, Long> loans) {
+        Map<String, Long> terms = new HashMap<>();
+        for (Book b : books.values()) {
+            Set<String> keys = new LinkedHashSet<>();
+            for (String field : new String[]{b.getTitle(), b.getAuthor()}) {
+                keys.add(BookSearchIndex.normalize(field));
+                for (String word : field.trim().split("\\s+")) {
+                    String key = BookSearchIndex.normalize(word);
+                    if (key.length() >= 3 && !key.equals("the")) keys.add(key);
+                }
+            }
+            for (String key : keys) terms.merge(key, loans.getOrDefault(b.getBookId(), 0L), Long::sum);
+        }
+        return terms;
+    }
+
+    private static String phrase(Random random) {
+        StringBuilder text = new StringBuilder();
+        int words = 1 + random.nextInt(3);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) text.append(' ');
+            String word = WORDS[random.nextInt(WORDS.length)];
+            text.append(random.nextBoolean() ? word : Character.toUpperCase(word.charAt(0)) + word.substring(1));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,201 @@
+package library;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Start-up replay of library.wal: after a crash before a save, after a save
+// that crashed before the log was cleared, and with a torn last record; and
+// what the log does while running (checkpoints, failed appends)
+class LibraryRecoveryTest {
+    @TempDir
+    Path dir;
+
+    private final List<LibrarySystem> started = new ArrayList<>();
+
+    @BeforeEach
+    void writeFiles() throws IOException {
+        Files.write(dir.resolve("users.txt"), List.of(
+                "U001,John Doe,pass123,user",
+                "U002,Jane Smith,pass456,user",
+                "A001,Admin,admin123,admin"));
+        Files.write(dir.resolve("books.txt"), List.of(
+                "B001,The Great Gatsby,F. Scott Fitzgerald,true",
+                "B002,To Kill a Mockingbird,Harper Lee,3/3",
+                "B003,1984,George Orwell,true"));
+        Files.write(dir.resolve("transactions.txt"), List.of(
+                "T001,U001,B001,2025-10-14,2025-10-17"));
+    }
+
+    @AfterEach
+    void stop() {
+        for (LibrarySystem system : started) system.shutDown(false);
+    }
+
+    @Test
+    void replaysChangesMadeSinceTheLastSave() {
+        LibraryService service = start();
+        User john = service.findUser("U001");
+        assertTrue(service.borrowBook(john, "B002").isSuccess());
+        assertTrue(service.borrowBook(john, "B003").isSuccess());
+        assertTrue(service.returnBook(john, "B003").isSuccess());
+        crash();
+
+        LibraryService recovered = start();
+        assertEquals(2, recovered.findBook("B002").getAvailableCopies());
+        assertEquals(1, recovered.findBook("B003").getAvailableCopies());
+        assertEquals(List.of("B002"), recovered.findUser("U001").getBorrowedBooks());
+        assertEquals(List.of(
+                "T001,U001,B001,2025-10-14,2025-10-17",
+                "T002,U001,B002," + today() + ",null",
+                "T003,U001,B003," + today() + "," + today()), transactionRecords(recovered));
+    }
+
+    @Test
+    void replayAfterASaveThatKeptTheLogChangesNothing() throws IOException {
+        LibraryService service = start();
+        User john = service.findUser("U001");
+        User jane = service.findUser("U002");
+        assertTrue(service.borrowBook(john, "B002").isSuccess());
+        assertTrue(service.borrowBook(jane, "B002").isSuccess());
+        assertTrue(service.borrowBook(jane, "B003").isSuccess());
+        assertTrue(service.returnBook(jane, "B002").isSuccess());
+        assertTrue(service.placeHold(john, "B003").isSuccess());
+        byte[] log = Files.readAllBytes(dir.resolve("library.wal"));
+        LibrarySystem system = started.remove(started.size() - 1);
+        system.shutDown(true);
+        // As if the save had finished but the log was never truncated
+        Files.write(dir.resolve("library.wal"), log);
+
+        LibraryService recovered = start();
+        List<String> records = transactionRecords(recovered);
+        assertEquals(4, records.size());
+        assertEquals(2, recovered.findBook("B002").getAvailableCopies());
+        assertEquals(0, recovered.findBook("B003").getAvailableCopies());
+        assertEquals(List.of("B002"), recovered.findUser("U001").getBorrowedBooks());
+        assertEquals(List.of("B003"), recovered.findUser("U002").getBorrowedBooks());
+        assertEquals(1, recovered.findHolds("U001").size());
+
+        crash();
+        assertEquals(records, transactionRecords(start()));
+    }
+
+    @Test
+    void dropsATornLastRecordAndKeepsLoggingAfterIt() throws IOException {
+        String borrow = "BORROW,T002,U002,B002," + today();
+        byte[] torn = "1f2e3d|PUT_BOOK,B009,Café".getBytes(StandardCharsets.UTF_8);
+        Files.write(dir.resolve("library.wal"), concat(
+                (checksum(borrow) + "|" + borrow + "\n").getBytes(StandardCharsets.UTF_8),
+                // Cut inside the two-byte é, so the tail is not even valid UTF-8
+                Arrays.copyOf(torn, torn.length - 1)));
+
+        LibraryService service = start();
+        assertEquals(2, service.findBook("B002").getAvailableCopies());
+        assertNull(service.findBook("B009"));
+        assertTrue(service.borrowBook(service.findUser("U001"), "B003").isSuccess());
+        crash();
+
+        LibraryService recovered = start();
+        assertEquals(List.of("B002"), recovered.findUser("U002").getBorrowedBooks());
+        assertEquals(List.of("B003"), recovered.findUser("U001").getBorrowedBooks());
+        assertEquals(3, transactionRecords(recovered).size());
+    }
+
+    @Test
+    void checkpointSavesAndEmptiesTheLog() throws IOException {
+        LibrarySystem system = new LibrarySystem(dir);
+        assertTrue(system.startUp());
+        started.add(system);
+        LibraryService service = system.getService();
+        assertTrue(service.borrowBook(service.findUser("U001"), "B002").isSuccess());
+        assertTrue(Files.size(dir.resolve("library.wal")) > 0);
+        system.checkpoint();
+        assertEquals(0, Files.size(dir.resolve("library.wal")));
+        crash();
+
+        LibraryService recovered = start();
+        assertEquals(2, recovered.findBook("B002").getAvailableCopies());
+        assertEquals(List.of("B002"), recovered.findUser("U001").getBorrowedBooks());
+        assertEquals(2, transactionRecords(recovered).size());
+    }
+
+    @Test
+    void changesThatCannotBeLoggedAreUndone() {
+        LibraryService service = start();
+        User john = service.findUser("U001");
+        User jane = service.findUser("U002");
+        assertTrue(service.borrowBook(john, "B001").isSuccess());
+        // The service outlives its closed log, so every append now fails
+        crash();
+
+        assertFalse(service.borrowBook(jane, "B002").isSuccess());
+        assertEquals(3, service.findBook("B002").getAvailableCopies());
+        assertEquals(List.of(), jane.getBorrowedBooks());
+        assertFalse(service.returnBook(john, "B001").isSuccess());
+        assertEquals(0, service.findBook("B001").getAvailableCopies());
+        assertEquals(List.of("B001"), john.getBorrowedBooks());
+        assertEquals(2, transactionRecords(service).size());
+        assertFalse(service.placeHold(jane, "B001").isSuccess());
+        assertEquals(List.of(), service.findHolds("U002"));
+        assertFalse(service.updateBook("B002", "New Title", "", 5).isSuccess());
+        assertEquals("To Kill a Mockingbird", service.findBook("B002").getTitle());
+        assertEquals(3, service.findBook("B002").getTotalCopies());
+        assertEquals(3, service.findBook("B002").getAvailableCopies());
+        assertFalse(service.deleteUser("U002").isSuccess());
+        assertEquals(jane, service.findUser("U002"));
+
+        LibraryService recovered = start();
+        assertEquals(List.of("B001"), recovered.findUser("U001").getBorrowedBooks());
+        assertEquals(3, recovered.findBook("B002").getAvailableCopies());
+    }
+
+    private LibraryService start() {
+        LibrarySystem system = new LibrarySystem(dir);
+        assertTrue(system.startUp());
+        started.add(system);
+        return system.getService();
+    }
+
+    // Closes the log without saving: everything since the last save is only in the log
+    private void crash() {
+        started.remove(started.size() - 1).shutDown(false);
+    }
+
+    private static List<String> transactionRecords(LibraryService service) {
+        List<String> records = new ArrayList<>();
+        service.forEachTransaction(t -> records.add(t.toRecord()));
+        return records;
+    }
+
+    private static String today() {
+        return LocalDate.now().toString();
+    }
+
+    private static String checksum(String record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] all = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, all, a.length, b.length);
+        return all;
+    }
+}
@@ -0,0 +1,119 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Patrons borrowing, returning, placing and cancelling holds on the same few
+// copies at once: the count on the shelf never leaves 0..total, and at the
+// end every copy is on the shelf, out on a loan or set aside for a hold
+class LibraryServiceConcurrencyTest {
+    private static final int COPIES = 2;
+    private static final int PATRONS = 6;
+    private static final int OPS_PER_PATRON = 150;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void copyCountsStayConsistentUnderContention() throws Exception {
+        List<String> users = new ArrayList<>();
+        for (int i = 1; i <= PATRONS; i++) users.add(String.format("U%03d,Patron %d,pw,user", i, i));
+        Files.write(dir.resolve("users.txt"), users);
+        Files.write(dir.resolve("books.txt"), List.of(
+                "B001,Contended,Some Author," + COPIES + "/" + COPIES,
+                "B002,Single Copy,Other Author,true"));
+        Files.write(dir.resolve("transactions.txt"), List.of());
+
+        LibrarySystem system = new LibrarySystem(dir);
+        assertTrue(system.startUp());
+        try {
+            LibraryService service = system.getService();
+            List<Book> books = List.of(service.findBook("B001"), service.findBook("B002"));
+            AtomicBoolean running = new AtomicBoolean(true);
+            AtomicInteger violations = new AtomicInteger();
+            Thread watcher = new Thread(() -> {
+                while (running.get()) {
+                    for (Book b : books) {
+                        int available = b.getAvailableCopies();
+                        if (available < 0 || available > b.getTotalCopies()) violations.incrementAndGet();
+                    }
+                }
+            });
+            watcher.start();
+
+            CountDownLatch go = new CountDownLatch(1);
+            List<Thread> patrons = new ArrayList<>();
+            List<Throwable> failures = new ArrayList<>();
+            for (int p = 1; p <= PATRONS; p++) {
+                User user = service.findUser(String.format("U%03d", p));
+                SplittableRandom random = new SplittableRandom(p);
+                Thread t = new Thread(() -> {
+                    try {
+                        go.await();
+                        for (int i = 0; i < OPS_PER_PATRON; i++) {
+                            String bookId = random.nextBoolean() ? "B001" : "B002";
+                            switch (random.nextInt(5)) {
+                                case 0:
+                                case 1:
+                                    service.borrowBook(user, bookId);
+                                    break;
+                                case 2:
+                                    service.returnBook(user, bookId);
+                                    break;
+                                case 3:
+                                    service.placeHold(user, bookId);
+                                    break;
+                                default:
+                                    if (random.nextInt(4) == 0) service.sweepHolds(LocalDate.now());
+                                    else service.cancelHold(user, bookId);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    }
+                });
+                t.start();
+                patrons.add(t);
+            }
+            go.countDown();
+            for (Thread t : patrons) t.join();
+            running.set(false);
+            watcher.join();
+
+            assertEquals(List.of(), failures);
+            assertEquals(0, violations.get());
+            for (Book b : books) {
+                int loans = 0;
+                for (int p = 1; p <= PATRONS; p++) {
+                    if (service.findUser(String.format("U%03d", p)).getBorrowedBooks().contains(b.getBookId())) loans++;
+                }
+                int[] openRows = {0};
+                service.forEachTransactionByBook(b.getBookId(), t -> {
+                    if (t.getDateReturned() == null) openRows[0]++;
+                });
+                long setAside = service.findHoldsOnBook(b.getBookId()).stream().filter(Hold::isReady).count();
+                assertEquals(loans, openRows[0], "open loans of " + b.getBookId());
+                assertEquals(b.getTotalCopies(), b.getAvailableCopies() + loans + setAside,
+                        "copies of " + b.getBookId());
+            }
+        } finally {
+            system.shutDown(false);
+        }
+    }
+}
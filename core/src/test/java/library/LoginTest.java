@@ -0,0 +1,117 @@
+package library;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Logins through the name index and the login cache, against the scan over
+// every user that login() used to be
+class LoginTest {
+    // {id, name, password, role}; two users share a name
+    private static final String[][] USERS = {
+            {"U001", "John Doe", "pass123", "user"},
+            {"U002", "Jane Smith", "pass456", "user"},
+            {"U003", "JANE SMITH", "other", "user"},
+            {"U004", "Émile Zola", "germinal", "user"},
+            {"A001", "Admin", "admin123", "admin"}};
+
+    @TempDir
+    Path dir;
+
+    private LibrarySystem system;
+
+    @BeforeEach
+    void writeFiles() throws IOException {
+        List<String> users = new ArrayList<>();
+        for (String[] u : USERS) users.add(String.join(",", u));
+        Files.write(dir.resolve("users.txt"), users);
+        Files.write(dir.resolve("books.txt"), List.of("B001,Dune,Frank Herbert,true"));
+        Files.write(dir.resolve("transactions.txt"), List.of());
+    }
+
+    @AfterEach
+    void stop() {
+        if (system != null) system.shutDown(false);
+    }
+
+    @Test
+    void findsTheSameUsersAsAScan() {
+        LibraryService service = start();
+        String[][] attempts = {
+                {"John Doe", "pass123"}, {"john doe", "pass123"}, {"JOHN DOE", "wrong"}, {"John", "pass123"},
+                {"jane smith", "pass456"}, {"Jane Smith", "other"}, {"jane smith", "nope"},
+                {"émile zola", "germinal"}, {"ÉMILE ZOLA", "germinal"}, {"Admin", "admin123"},
+                {"nobody", "pass123"}, {"", ""}};
+        // Twice: the first round verifies (and hashes the plaintext), the second hits the cache
+        for (int round = 0; round < 2; round++) {
+            for (String[] a : attempts) {
+                User u = service.login(a[0], a[1]);
+                assertEquals(scan(a[0], a[1]), u == null ? null : u.getId(), a[0] + "/" + a[1]);
+            }
+        }
+    }
+
+    @Test
+    void changedAndDeletedUsersAreNotServedFromTheCache() {
+        LibraryService service = start();
+        assertEquals("U001", service.login("John Doe", "pass123").getId());
+        assertTrue(service.updateUser("U001", "", "secret", "").isSuccess());
+        assertNull(service.login("John Doe", "pass123"));
+        assertEquals("U001", service.login("John Doe", "secret").getId());
+
+        assertTrue(service.updateUser("U001", "Johnny Doe", "", "").isSuccess());
+        assertNull(service.login("John Doe", "secret"));
+        assertEquals("U001", service.login("johnny doe", "secret").getId());
+
+        assertTrue(service.deleteUser("U001").isSuccess());
+        assertNull(service.login("Johnny Doe", "secret"));
+    }
+
+    @Test
+    void aLoginVerifiedBeforeAChangeIsNotCached() {
+        LoginCache cache = new LoginCache(300);
+        long seen = cache.generation();
+        cache.invalidateUser("U001");
+        cache.put("john doe", "U001", "pass123", seen);
+        assertNull(cache.lookup("john doe", "pass123"));
+
+        cache.put("john doe", "U001", "pass123", cache.generation());
+        assertEquals("U001", cache.lookup("john doe", "pass123"));
+        assertNull(cache.lookup("john doe", "pass124"));
+        // Another user's change drops nothing cached, but still fences logins in flight
+        seen = cache.generation();
+        cache.invalidateUser("U002");
+        assertEquals("U001", cache.lookup("john doe", "pass123"));
+        cache.put("jane smith", "U002", "pass456", seen);
+        assertNull(cache.lookup("jane smith", "pass456"));
+
+        LoginCache off = new LoginCache(0);
+        off.put("john doe", "U001", "pass123", off.generation());
+        assertNull(off.lookup("john doe", "pass123"));
+    }
+
+    // The first user in file order whose name matches ignoring case and whose password is right
+    private static String scan(String name, String password) {
+        for (String[] u : USERS) {
+            if (u[1].equalsIgnoreCase(name) && u[2].equals(password)) return u[0];
+        }
+        return null;
+    }
+
+    private LibraryService start() {
+        system = new LibrarySystem(dir);
+        assertTrue(system.startUp());
+        return system.getService();
+    }
+}
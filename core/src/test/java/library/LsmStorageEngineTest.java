@@ -0,0 +1,168 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LsmStorageEngineTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsAcrossTheMemtableAndTables() throws IOException {
+        try (LsmStorageEngine store = LsmStorageEngine.open(dir)) {
+            store.put("b", "1");
+            store.put("d", "1");
+            store.flush();
+            store.put("a", "2");
+            store.put("b", "2");
+            store.flush();
+            // Still in the memtable
+            store.put("c", "3");
+            store.put("d", "3");
+
+            assertEquals("2", store.get("a"));
+            assertEquals("2", store.get("b"));
+            assertEquals("3", store.get("c"));
+            assertEquals("3", store.get("d"));
+            assertNull(store.get("e"));
+            assertEquals(Map.of("a", "2", "b", "2", "c", "3", "d", "3"), contents(store, null));
+            assertEquals(Map.of("c", "3", "d", "3"), contents(store, "b"));
+            assertEquals(4, store.size());
+        }
+    }
+
+    @Test
+    void deletionsHideOlderValues() throws IOException {
+        try (LsmStorageEngine store = LsmStorageEngine.open(dir)) {
+            store.put("a", "1");
+            store.put("b", "1");
+            store.put("c", "1");
+            store.flush();
+            store.delete("b");
+            assertNull(store.get("b"));
+            assertEquals(List.of("a", "c"), new ArrayList<>(contents(store, null).keySet()));
+            store.flush();
+            assertNull(store.get("b"));
+            assertEquals(List.of("a", "c"), new ArrayList<>(contents(store, null).keySet()));
+            // Deleting what is not there changes nothing
+            store.delete("x");
+            assertEquals(2, store.size());
+            store.put("b", "2");
+            assertEquals("2", store.get("b"));
+        }
+    }
+
+    @Test
+    void compactionMergesTablesAndKeepsTheNewestValues() throws Exception {
+        Map<String, String> expected = new TreeMap<>();
+        try (LsmStorageEngine store = LsmStorageEngine.open(dir)) {
+            for (int round = 0; round < 4; round++) {
+                for (int i = round; i < 100; i += 2) {
+                    String key = String.format("k%03d", i);
+                    store.put(key, "v" + round);
+                    expected.put(key, "v" + round);
+                }
+                for (int i = 0; i < 100; i += 7 + round) {
+                    String key = String.format("k%03d", i);
+                    store.delete(key);
+                    expected.remove(key);
+                }
+                store.flush();
+            }
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (store.getTableCount() > 1 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+            assertEquals(1, store.getTableCount());
+            assertEquals(expected, contents(store, null));
+            assertEquals(expected.size(), store.size());
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.filter(p -> p.toString().endsWith(".sst")).count());
+        }
+
+        try (LsmStorageEngine reopened = LsmStorageEngine.open(dir)) {
+            assertEquals(expected, contents(reopened, null));
+            assertEquals(expected.size(), reopened.size());
+            for (Map.Entry<String, String> e : expected.entrySet()) {
+                assertEquals(e.getValue(), reopened.get(e.getKey()));
+            }
+        }
+    }
+
+    @Test
+    void unflushedWritesAreLostButTheCountStaysTrue() throws IOException {
+        LsmStorageEngine store = LsmStorageEngine.open(dir);
+        store.put("a", "1");
+        store.put("b", "1");
+        store.flush();
+        store.put("c", "1");
+        // Reopened without close(), as after a crash
+        try (LsmStorageEngine reopened = LsmStorageEngine.open(dir)) {
+            assertEquals(2, reopened.size());
+            assertTrue(contents(reopened, null).keySet().containsAll(List.of("a", "b")));
+        }
+        store.close();
+    }
+
+    @Test
+    void compactionCorrectsTheCount() throws Exception {
+        try (LsmStorageEngine store = LsmStorageEngine.open(dir)) {
+            store.put("a", "1");
+            store.put("b", "1");
+            store.flush();
+            store.delete("a");
+            store.flush();
+            // The first table's bloom filter still holds "a", so this looks like
+            // a deletion, and putting it back looks like an overwrite
+            store.delete("a");
+            store.put("c", "1");
+            assertEquals(1, store.size());
+            store.flush();
+            store.put("a", "2");
+            assertEquals(1, store.size());
+            store.flush();
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (store.getTableCount() > 1 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+            assertEquals(1, store.getTableCount());
+            assertEquals(List.of("a", "b", "c"), new ArrayList<>(contents(store, null).keySet()));
+            assertEquals(3, store.size());
+        }
+        try (LsmStorageEngine reopened = LsmStorageEngine.open(dir)) {
+            assertEquals(3, reopened.size());
+        }
+    }
+
+    @Test
+    void aManifestWithoutACountIsRejected() throws IOException {
+        try (LsmStorageEngine store = LsmStorageEngine.open(dir)) {
+            store.put("a", "1");
+        }
+        Path manifest = dir.resolve("MANIFEST");
+        List<String> lines = new ArrayList<>(Files.readAllLines(manifest));
+        lines.removeIf(line -> line.startsWith("count="));
+        Files.write(manifest, lines);
+        assertThrows(IOException.class, () -> LsmStorageEngine.open(dir));
+    }
+
+    private static Map<String, String> contents(StorageEngine store, String after) throws IOException {
+        Map<String, String> all = new TreeMap<>();
+        store.scan(after, (key, value) -> {
+            all.put(key, value);
+            return true;
+        });
+        return all;
+    }
+}
@@ -0,0 +1,136 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchCacheTest {
+    private static final String[] WORDS = {"dune", "war", "peace", "tale", "two", "cities", "herbert", "tolstoy",
+            "dickens", "the", "of", "and"};
+    private static final String[] QUERIES = {"dune", "war", "pe", "a", "the", "ti", "of t", "herbert", "tolstoy",
+            "ens", "two cities", "e", "xyz"};
+
+    @Test
+    void cachedResultsFollowAddsEditsAndRemovals() {
+        Random random = new Random(3);
+        BookRepository books = new BookRepository();
+        for (int i = 0; i < 60; i++) {
+            books.add(new Book(String.format("B%03d", i), phrase(random), phrase(random), true));
+        }
+        for (int step = 0; step < 2000; step++) {
+            String id = String.format("B%03d", random.nextInt(80));
+            switch (random.nextInt(8)) {
+                case 0:
+                    if (!books.contains(id)) books.add(new Book(id, phrase(random), phrase(random), true));
+                    break;
+                case 1: {
+                    Book b = books.findById(id);
+                    if (b != null) {
+                        if (random.nextBoolean()) b.setTitle(phrase(random));
+                        else b.setAuthor(phrase(random));
+                        books.update(b);
+                    }
+                    break;
+                }
+                case 2:
+                    books.remove(id);
+                    break;
+                default: {
+                    String query = QUERIES[random.nextInt(QUERIES.length)];
+                    assertEquals(scan(books, query), ids(books.search(query)), "query '" + query + "'");
+                }
+            }
+        }
+        assertTrue(books.getSearchCache().getHits() > 0);
+    }
+
+    @Test
+    void editsOnlyDropTheResultsTheyChange() {
+        BookRepository books = new BookRepository();
+        books.add(new Book("B001", "Dune", "Frank Herbert", true));
+        books.add(new Book("B002", "War and Peace", "Leo Tolstoy", true));
+        SearchCache cache = books.getSearchCache();
+        books.search("dune");
+        books.search("war");
+        assertEquals(2, cache.size());
+
+        Book war = books.findById("B002");
+        war.setTitle("War and Peace (abridged)");
+        books.update(war);
+        assertEquals(2, cache.size());
+        war.setTitle("Anna Karenina");
+        books.update(war);
+        assertNotNull(cache.get("dune"));
+        assertNull(cache.get("war"));
+        assertEquals(List.of(), ids(books.search("war")));
+
+        books.add(new Book("B003", "Dune Messiah", "Frank Herbert", true));
+        assertNull(cache.get("dune"));
+        assertEquals(List.of("B001", "B003"), ids(books.search("dune")));
+        books.remove("B001");
+        assertEquals(List.of("B003"), ids(books.search("dune")));
+    }
+
+    @Test
+    void oneOffQueriesDoNotDisplaceFrequentOnes() {
+        // Room for eight single-row results
+        SearchCache cache = new SearchCache(16);
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 8; i++) cache.get("regular" + i);
+        }
+        for (int i = 0; i < 8; i++) cache.put("regular" + i, List.of("B00" + i));
+        for (int i = 0; i < 50; i++) {
+            String query = "once" + i;
+            assertNull(cache.get(query));
+            cache.put(query, List.of("B100"));
+        }
+        for (int i = 0; i < 8; i++) {
+            assertEquals(List.of("B00" + i), cache.get("regular" + i));
+        }
+        assertEquals(0, cache.getEvictions());
+
+        // A query asked for more often than the coldest entry does get in
+        for (int round = 0; round < 8; round++) cache.get("rising");
+        cache.put("rising", List.of("B200"));
+        assertEquals(List.of("B200"), cache.get("rising"));
+        assertEquals(1, cache.getEvictions());
+    }
+
+    // What searchBooks did before the index and cache
+    private static List<String> scan(BookRepository books, String query) {
+        String key = query.trim().toLowerCase(Locale.ROOT);
+        List<String> result = new ArrayList<>();
+        for (Book b : books.findAll()) {
+            if (b.getTitle().toLowerCase(Locale.ROOT).contains(key)
+                    || b.getAuthor().toLowerCase(Locale.ROOT).contains(key)) {
+                result.add(b.getBookId());
+            }
+        }
+        result.sort(null);
+        return result;
+    }
+
+    private static List<String> ids(List<Book> books) {
+        List<String> result = new ArrayList<>();
+        for (Book b : books) result.add(b.getBookId());
+        return result;
+    }
+
+    private static String phrase(Random random) {
+        StringBuilder text = new StringBuilder();
+        int words = 1 + random.nextInt(3);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) text.append(' ');
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+}
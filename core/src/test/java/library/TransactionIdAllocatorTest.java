@@ -0,0 +1,50 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionIdAllocatorTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void orderSortsByNumberAndPutsIrregularIdsLast() {
+        List<String> ids = new ArrayList<>(List.of("T1000", "LEGACY", "T999", "T001", "T10000", "T002"));
+        ids.sort(TransactionIdAllocator.ORDER);
+        assertEquals(List.of("T001", "T002", "T999", "T1000", "T10000", "LEGACY"), ids);
+    }
+
+    @Test
+    void blocksNeverOverlapEachOtherOrSingleIds() {
+        TransactionIdAllocator allocator = new TransactionIdAllocator();
+        TransactionIdAllocator.Block a = allocator.newBlock(4);
+        TransactionIdAllocator.Block b = allocator.newBlock(4);
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(seen.add(a.next()));
+            assertTrue(seen.add(b.next()));
+            assertTrue(seen.add(allocator.next()));
+        }
+        assertEquals(30, seen.size());
+    }
+
+    @Test
+    void blocksMoveAboveTheCounterSavedSinceTheyWereReserved() throws IOException {
+        TransactionIdAllocator allocator = new TransactionIdAllocator();
+        TransactionIdAllocator.Block block = allocator.newBlock(10);
+        assertEquals("T001", block.next());
+        allocator.save(dir.resolve("transactions.seq"));
+        long saved = allocator.current();
+        assertTrue(TransactionIdAllocator.parse(block.next()) > saved);
+    }
+}
@@ -0,0 +1,161 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionRepositoryTest {
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+
+    @Test
+    void markReturnedReportsWhetherItClosedTheLoan() {
+        TransactionRepository repo = new TransactionRepository();
+        Transaction t = repo.add("T1", "U1", "B1", DAY, null);
+        assertTrue(repo.markReturned(t, DAY.plusDays(3)));
+        assertNull(repo.findOpenLoan("U1", "B1"));
+        assertEquals(DAY.plusDays(3), t.getDateReturned());
+        // Returning it again changes nothing
+        assertFalse(repo.markReturned(t, DAY.plusDays(5)));
+        assertEquals(DAY.plusDays(3), t.getDateReturned());
+    }
+
+    @Test
+    void aLoanFoundBeforeTheTableWasRebuiltIsNotClosed() {
+        TransactionRepository repo = new TransactionRepository();
+        Transaction old = repo.add("T1", "U1", "B1", DAY, DAY.plusDays(1));
+        Transaction stale = repo.add("T2", "U1", "B2", DAY, null);
+        repo.removeAll(List.of(old));
+
+        assertFalse(repo.markReturned(stale, DAY.plusDays(2)));
+        Transaction current = repo.findOpenLoan("U1", "B2");
+        assertEquals("T2", current.getTransactionId());
+        assertTrue(repo.markReturned(current, DAY.plusDays(2)));
+        assertNull(repo.findOpenLoan("U1", "B2"));
+        assertTrue(repo.findOpenBorrowedBefore(DAY.plusDays(10)).isEmpty());
+    }
+
+    @Test
+    void indexesMatchAScanThroughLoansReturnsAndArchiving() {
+        Random random = new Random(11);
+        TransactionRepository repo = new TransactionRepository();
+        for (int round = 0; round < 4; round++) {
+            randomHistory(repo, random, 300);
+            assertIndexesMatchScan(repo);
+            // Move some returned loans out, as archiving does
+            List<Transaction> archived = new ArrayList<>();
+            for (Transaction t : repo.findAll()) {
+                if (t.isReturned() && random.nextBoolean()) archived.add(t);
+            }
+            repo.removeAll(archived);
+            assertIndexesMatchScan(repo);
+        }
+    }
+
+    @Test
+    void dateQueriesMatchAScanThroughReturnsAndArchiving() {
+        Random random = new Random(5);
+        TransactionRepository repo = new TransactionRepository();
+        for (int round = 0; round < 4; round++) {
+            randomHistory(repo, random, 300);
+            assertDateQueriesMatchScan(repo, random);
+            List<Transaction> archived = new ArrayList<>();
+            for (Transaction t : repo.findAll()) {
+                if (t.isReturned() && random.nextInt(3) == 0) archived.add(t);
+            }
+            repo.removeAll(archived);
+            assertDateQueriesMatchScan(repo, random);
+        }
+        repo.clear();
+        assertTrue(repo.findBorrowedBetween(DAY, DAY.plusDays(100)).isEmpty());
+        assertTrue(repo.findOpenBorrowedBefore(DAY.plusDays(100)).isEmpty());
+    }
+
+    // Oldest borrow first; rows borrowed the same day stay in table order
+    private static void assertDateQueriesMatchScan(TransactionRepository repo, Random random) {
+        List<Transaction> all = repo.findAll();
+        for (int i = 0; i < 30; i++) {
+            LocalDate from = DAY.plusDays(random.nextInt(70) - 5);
+            LocalDate to = from.plusDays(random.nextInt(20) - 2);
+            List<Transaction> between = filter(all, t -> !t.getDateBorrowed().isBefore(from)
+                    && !t.getDateBorrowed().isAfter(to));
+            between.sort(Comparator.comparing(Transaction::getDateBorrowed));
+            assertEquals(ids(between), ids(repo.findBorrowedBetween(from, to)), from + ".." + to);
+
+            LocalDate cutoff = DAY.plusDays(random.nextInt(70));
+            List<Transaction> overdue = filter(all, t -> !t.isReturned() && t.getDateBorrowed().isBefore(cutoff));
+            overdue.sort(Comparator.comparing(Transaction::getDateBorrowed));
+            assertEquals(ids(overdue), ids(repo.findOpenBorrowedBefore(cutoff)), "before " + cutoff);
+
+            List<Transaction> returned = filter(all, t -> t.isReturned() && t.getDateReturned().isBefore(cutoff));
+            assertEquals(ids(returned), ids(repo.findReturnedBefore(cutoff)), "returned before " + cutoff);
+        }
+    }
+
+    private static void assertIndexesMatchScan(TransactionRepository repo) {
+        List<Transaction> all = repo.findAll();
+        for (int i = 0; i < 8; i++) {
+            String user = "U" + i;
+            assertEquals(ids(filter(all, t -> t.getUserId().equals(user))), ids(repo.findByUser(user)));
+            for (int j = 0; j < 12; j++) {
+                String book = "B" + j;
+                List<Transaction> open = filter(all, t -> t.getUserId().equals(user)
+                        && t.getBookId().equals(book) && !t.isReturned());
+                Transaction found = repo.findOpenLoan(user, book);
+                assertEquals(open.isEmpty() ? null : open.get(0).getTransactionId(),
+                        found == null ? null : found.getTransactionId());
+            }
+        }
+        for (int j = 0; j < 12; j++) {
+            String book = "B" + j;
+            assertEquals(ids(filter(all, t -> t.getBookId().equals(book))), ids(repo.findByBook(book)));
+        }
+        List<Transaction> open = filter(all, t -> !t.isReturned());
+        assertEquals(new HashSet<>(ids(open)), new HashSet<>(ids(repo.findOpenLoans())));
+        assertEquals(open.size(), repo.openLoanCount());
+        assertTrue(repo.findByUser("nobody").isEmpty());
+        assertNull(repo.findOpenLoan("nobody", "B0"));
+    }
+
+    // Borrows and returns over a few users and books, one open loan per
+    // user and book at most, as the service allows
+    private static void randomHistory(TransactionRepository repo, Random random, int steps) {
+        for (int i = 0; i < steps; i++) {
+            String user = "U" + random.nextInt(8);
+            String book = "B" + random.nextInt(12);
+            LocalDate day = DAY.plusDays(random.nextInt(60));
+            Transaction open = repo.findOpenLoan(user, book);
+            if (open == null) {
+                repo.add("T" + repo.size() + "-" + i, user, book, day, null);
+            } else {
+                LocalDate borrowed = open.getDateBorrowed();
+                assertTrue(repo.markReturned(open, borrowed.plusDays(random.nextInt(20))));
+            }
+        }
+    }
+
+    private static List<Transaction> filter(List<Transaction> all, Predicate<Transaction> test) {
+        List<Transaction> result = new ArrayList<>();
+        for (Transaction t : all) {
+            if (test.test(t)) result.add(t);
+        }
+        return result;
+    }
+
+    private static List<String> ids(Collection<Transaction> transactions) {
+        List<String> result = new ArrayList<>();
+        for (Transaction t : transactions) result.add(t.getTransactionId());
+        return result;
+    }
+}